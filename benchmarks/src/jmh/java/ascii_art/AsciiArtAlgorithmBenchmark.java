@@ -0,0 +1,85 @@
+package ascii_art;
+
+import ascii_output.CharGrid;
+import constants.Constants;
+import image.Image;
+import image.ImageEditor;
+import image.SyntheticImages;
+import image_char_matching.SubImgCharMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link AsciiArtAlgorithm#run()} at several resolutions, both on a cold
+ * state (nothing cached) and on a warm one (the previous run had the same parameters).
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AsciiArtAlgorithmBenchmark {
+
+    /** Width of the image, in pixels. */
+    private static final int IMAGE_WIDTH = 1024;
+
+    /** Height of the image, in pixels. */
+    private static final int IMAGE_HEIGHT = 768;
+
+    /** The resolution (chars per row) of the runs. */
+    @Param({"16", "64", "256"})
+    private int resolution;
+
+    /** The padded image. */
+    private Image image;
+
+    /** The matcher, over the default charset. */
+    private SubImgCharMatcher matcher;
+
+    /** State holding the result of a run with the benchmark's parameters. */
+    private AsciiArtSingleton warmState;
+
+    /**
+     * Builds the image and the matcher, and warms the state of the warm benchmark.
+     */
+    @Setup
+    public void setUp() {
+        image = ImageEditor.padImage(SyntheticImages.createImage(IMAGE_WIDTH, IMAGE_HEIGHT));
+        char[] charset = new char[Constants.DEFAULT_CHARSET.size()];
+        int i = 0;
+        for (char c : Constants.DEFAULT_CHARSET) {
+            charset[i++] = c;
+        }
+        matcher = new SubImgCharMatcher(charset);
+        warmState = AsciiArtSingleton.newInstance();
+        new AsciiArtAlgorithm(image, resolution, matcher, warmState).run();
+    }
+
+    /**
+     * Measures a run that computes everything.
+     *
+     * @return the ASCII art.
+     */
+    @Benchmark
+    public CharGrid coldRun() {
+        return new AsciiArtAlgorithm(image, resolution, matcher, AsciiArtSingleton.newInstance()).run();
+    }
+
+    /**
+     * Measures a run whose result is cached.
+     *
+     * @return the ASCII art.
+     */
+    @Benchmark
+    public CharGrid warmRun() {
+        return new AsciiArtAlgorithm(image, resolution, matcher, warmState).run();
+    }
+}
@@ -0,0 +1,77 @@
+package ascii_output;
+
+import constants.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the console and HTML outputs, writing to a discarding writer so that
+ * only formatting is measured.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AsciiOutputBenchmark {
+
+    /** The number of chars per row (and of rows) of the written grid. */
+    @Param({"64", "256"})
+    private int size;
+
+    /** The grid of chars written. */
+    private CharGrid chars;
+
+    /** The console output. */
+    private ConsoleAsciiOutput consoleOutput;
+
+    /** The HTML output. */
+    private HtmlAsciiOutput htmlOutput;
+
+    /**
+     * Fills the grid with random printable chars, including the ones HTML escapes.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        chars = new CharGrid(size, size);
+        char[] cells = chars.getChars();
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = (char) (Constants.MIN_ASCII_VAL
+                    + random.nextInt(Constants.MAX_ASCII_VAL - Constants.MIN_ASCII_VAL + 1));
+        }
+        consoleOutput = new ConsoleAsciiOutput();
+        htmlOutput = new HtmlAsciiOutput(Constants.OUTPUT_FILE_NAME, Constants.HTML_FONT);
+    }
+
+    /**
+     * Measures formatting the grid for the console.
+     *
+     * @throws IOException never, since the writer discards everything.
+     */
+    @Benchmark
+    public void console() throws IOException {
+        consoleOutput.writeTo(chars, Writer.nullWriter());
+    }
+
+    /**
+     * Measures formatting the grid as an HTML document.
+     *
+     * @throws IOException never, since the writer discards everything.
+     */
+    @Benchmark
+    public void html() throws IOException {
+        htmlOutput.writeTo(chars, null, Writer.nullWriter());
+    }
+}
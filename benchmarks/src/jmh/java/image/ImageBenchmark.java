@@ -0,0 +1,116 @@
+package image;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of image loading and of the {@link ImageEditor} stages.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageBenchmark {
+
+    /** Width of the image, in pixels; the height is three quarters of it, so padding has work to do. */
+    @Param({"300", "1000"})
+    private int width;
+
+    /** Resolution (chars per row) the padded image is split at. */
+    @Param({"32", "128"})
+    private int resolution;
+
+    /** A PNG file holding the image. */
+    private File imageFile;
+
+    /** The image, as loaded. */
+    private Image image;
+
+    /** The image, padded to power-of-two dimensions. */
+    private Image paddedImage;
+
+    /** The padded image, split at the resolution. */
+    private Image[][] subImages;
+
+    /**
+     * Generates the image and writes it to a temporary file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        imageFile = File.createTempFile("benchmark", ".png");
+        ImageIO.write(SyntheticImages.createBufferedImage(width, width * 3 / 4), "png", imageFile);
+        image = new Image(imageFile.getPath());
+        paddedImage = ImageEditor.padImage(image);
+        subImages = ImageEditor.createSubImages(paddedImage, resolution);
+    }
+
+    /**
+     * Deletes the temporary image file.
+     */
+    @TearDown
+    public void tearDown() {
+        imageFile.delete();
+    }
+
+    /**
+     * Measures decoding the image file.
+     *
+     * @return the image.
+     * @throws IOException if the file cannot be read.
+     */
+    @Benchmark
+    public Image loadImage() throws IOException {
+        return new Image(imageFile.getPath());
+    }
+
+    /**
+     * Measures padding the image.
+     *
+     * @return the padded image.
+     */
+    @Benchmark
+    public Image padImage() {
+        return ImageEditor.padImage(image);
+    }
+
+    /**
+     * Measures splitting the padded image into sub-images.
+     *
+     * @return the sub-images.
+     */
+    @Benchmark
+    public Image[][] createSubImages() {
+        return ImageEditor.createSubImages(paddedImage, resolution);
+    }
+
+    /**
+     * Measures calculating the brightness of every sub-image.
+     *
+     * @return the sum of the brightnesses.
+     */
+    @Benchmark
+    public double calculateBrightness() {
+        double sum = 0;
+        for (Image[] row : subImages) {
+            for (Image subImage : row) {
+                sum += ImageEditor.calculateBrightness(subImage);
+            }
+        }
+        return sum;
+    }
+}
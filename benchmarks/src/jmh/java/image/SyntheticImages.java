@@ -0,0 +1,68 @@
+package image;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * The SyntheticImages class generates reproducible images for benchmarks, so runs need
+ * no image files and give the same input on every machine.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class SyntheticImages {
+
+    /** Seed of the noise, fixed so every run sees the same pixels. */
+    private static final long SEED = 42;
+
+    /** Largest noise added to every channel, in both directions. */
+    private static final int NOISE = 32;
+
+    /** Private constructor, since the class only has static members. */
+    private SyntheticImages() {
+    }
+
+    /**
+     * Creates an image of diagonal color gradients with noise, covering the whole brightness
+     * range in every region so that matching sees a realistic spread of values.
+     *
+     * @param width the width of the image, in pixels.
+     * @param height the height of the image, in pixels.
+     * @return the image.
+     */
+    public static BufferedImage createBufferedImage(int width, int height) {
+        Random random = new Random(SEED);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int base = (x * 255 / width + y * 255 / height) / 2;
+                int red = clamp(base + random.nextInt(2 * NOISE) - NOISE);
+                int green = clamp(255 - base + random.nextInt(2 * NOISE) - NOISE);
+                int blue = clamp((x ^ y) & 0xFF);
+                image.setRGB(x, y, red << 16 | green << 8 | blue);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Creates an {@link Image} of diagonal color gradients with noise.
+     *
+     * @param width the width of the image, in pixels.
+     * @param height the height of the image, in pixels.
+     * @return the image.
+     * @see #createBufferedImage(int, int)
+     */
+    public static Image createImage(int width, int height) {
+        return new Image(createBufferedImage(width, height));
+    }
+
+    /**
+     * Clamps a value to a color channel.
+     *
+     * @param value the value.
+     * @return the value, clamped between 0 and 255.
+     */
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
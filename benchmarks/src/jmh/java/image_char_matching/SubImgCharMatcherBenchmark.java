@@ -0,0 +1,90 @@
+package image_char_matching;
+
+import constants.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of {@link SubImgCharMatcher}: matching under every rounding strategy, and
+ * charset changes.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubImgCharMatcherBenchmark {
+
+    /** Number of brightness values matched per invocation. */
+    private static final int BRIGHTNESS_COUNT = 4096;
+
+    /** Char added and removed by the charset-change benchmark; not in the charset. */
+    private static final char CHANGED_CHAR = '~';
+
+    /** The rounding strategy matching uses. */
+    @Param({"up", "down", "abs"})
+    private String roundStrategy;
+
+    /** The number of chars in the charset, taken from the start of the printable range. */
+    @Param({"10", "94"})
+    private int charsetSize;
+
+    /** The matcher. */
+    private SubImgCharMatcher matcher;
+
+    /** Brightness values to match, spread over the whole range. */
+    private double[] brightnesses;
+
+    /**
+     * Builds the matcher and the brightness values.
+     */
+    @Setup
+    public void setUp() {
+        char[] charset = new char[charsetSize];
+        for (int i = 0; i < charsetSize; i++) {
+            charset[i] = (char) (Constants.MIN_ASCII_VAL + i);
+        }
+        matcher = new SubImgCharMatcher(charset);
+        matcher.setRoundStrategy(roundStrategy);
+        Random random = new Random(0);
+        brightnesses = new double[BRIGHTNESS_COUNT];
+        for (int i = 0; i < BRIGHTNESS_COUNT; i++) {
+            brightnesses[i] = random.nextDouble();
+        }
+    }
+
+    /**
+     * Measures matching every brightness value to a char.
+     *
+     * @param blackhole consumes the matched chars.
+     */
+    @Benchmark
+    public void match(Blackhole blackhole) {
+        for (double brightness : brightnesses) {
+            blackhole.consume(matcher.getCharByImageBrightness(brightness));
+        }
+    }
+
+    /**
+     * Measures adding a char to the charset and removing it again, which leaves the
+     * matcher as it was for the next invocation.
+     *
+     * @return the matcher.
+     */
+    @Benchmark
+    public SubImgCharMatcher addAndRemoveChar() {
+        matcher.addChar(CHANGED_CHAR);
+        matcher.removeChar(CHANGED_CHAR);
+        return matcher;
+    }
+}
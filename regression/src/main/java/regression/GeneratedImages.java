@@ -0,0 +1,67 @@
+package regression;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The GeneratedImages class writes the large images regression cases run over, so that
+ * they need not be stored in the repository. The same dimensions always give the same
+ * pixels.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class GeneratedImages {
+
+    /** Seed of the noise, fixed so every run sees the same pixels. */
+    private static final long SEED = 42;
+
+    /** Largest noise added to every channel, in both directions. */
+    private static final int NOISE = 32;
+
+    /** Private constructor, since the class only has static members. */
+    private GeneratedImages() {
+    }
+
+    /**
+     * Writes a PNG image of diagonal color gradients with noise, unless it was already written.
+     *
+     * @param directory the directory to write the image to.
+     * @param width the width of the image, in pixels.
+     * @param height the height of the image, in pixels.
+     * @return the image file.
+     * @throws IOException if the image cannot be written.
+     */
+    public static File write(File directory, int width, int height) throws IOException {
+        File file = new File(directory, String.format("generated-%dx%d.png", width, height));
+        if (file.isFile()) {
+            return file;
+        }
+        directory.mkdirs();
+        Random random = new Random(SEED);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int base = (x * 255 / width + y * 255 / height) / 2;
+                int red = clamp(base + random.nextInt(2 * NOISE) - NOISE);
+                int green = clamp(255 - base + random.nextInt(2 * NOISE) - NOISE);
+                int blue = (x ^ y) & 0xFF;
+                image.setRGB(x, y, red << 16 | green << 8 | blue);
+            }
+        }
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    /**
+     * Clamps a value to a color channel.
+     *
+     * @param value the value.
+     * @return the value, clamped between 0 and 255.
+     */
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
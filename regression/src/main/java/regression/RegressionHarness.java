@@ -0,0 +1,447 @@
+package regression;
+
+import ascii_art.Shell;
+import constants.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * The RegressionHarness class runs fixed command scripts through the {@link Shell} end to
+ * end and checks both what they print and what they cost.
+ *
+ * <p>Every case is a script in the cases directory whose first line names its image, either
+ * as a path relative to the project root ({@code # image: src/examples/cat.jpeg}) or as
+ * generated dimensions ({@code # image: generated 2400x1600}). Every case runs in its own JVM,
+ * several times. Its output, without the batch summary lines, must be byte-identical to its
+ * golden file, and its best wall time, peak heap and allocated bytes must stay within the
+ * recorded budgets, each allowing a relative threshold.</p>
+ *
+ * <p>A case may also hold a render server query ({@code # server: res=16}). Its script then
+ * renders to the console and to HTML, and the {@link RenderServerCheck} sends the same image
+ * with that query to a {@link ascii_art.RenderServer}, reporting whether it answers as the
+ * shell rendered, and how it answers the requests it must reject.</p>
+ *
+ * <p>Running with {@code --update} rewrites the goldens and budgets from the current run
+ * instead, which is only done when an output change is intended.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class RegressionHarness {
+
+    /** Argument that makes the harness rewrite goldens and budgets instead of checking them. */
+    private static final String UPDATE_ARG = "--update";
+
+    /** Argument that makes the JVM run a single case, as a child of the harness. */
+    private static final String CHILD_ARG = "--child";
+
+    /** Prefix of the script line naming the image of a case. */
+    private static final String IMAGE_HEADER = "# image: ";
+
+    /** Prefix of the script line holding the render server query of a case, if it has one. */
+    private static final String SERVER_HEADER = "# server: ";
+
+    /** Image header value prefix of generated images. */
+    private static final String GENERATED_IMAGE = "generated ";
+
+    /** Prefix of the line the child reports its measurements on. */
+    private static final String METRICS_PREFIX = "regression-metrics ";
+
+    /** Prefix of the batch summary line, whose timings differ between runs. */
+    private static final String SUMMARY_PREFIX = "Batch done:";
+
+    /** Prefix of the batch metrics line, whose numbers differ between runs. */
+    private static final String METRICS_JSON_PREFIX = "{";
+
+    /** Number of runs of every case; the best run is compared to the budgets. */
+    private static final int RUNS = 3;
+
+    /** Options of the child JVMs, fixed so heap measurements are comparable between runs. */
+    private static final List<String> CHILD_JVM_OPTIONS = List.of("-Xmx2g", "-XX:+UseSerialGC");
+
+    /** Names of the measured metrics, in report order. */
+    private static final String[] METRICS = {"wallMs", "peakHeapMb", "allocatedMb"};
+
+    /** Relative threshold of every metric when the budgets file does not set one. */
+    private static final double DEFAULT_THRESHOLD = 0.25;
+
+    /** The project root; image paths are relative to it. */
+    private final File root;
+
+    /** The directory of the harness: cases, goldens and budgets. */
+    private final File harnessDirectory;
+
+    /**
+     * Constructs a harness.
+     *
+     * @param root the project root.
+     */
+    public RegressionHarness(File root) {
+        this.root = root;
+        this.harnessDirectory = new File(root, "regression");
+    }
+
+    /**
+     * Runs all cases, checking them or, with {@code --update}, recording them.
+     * As a child, runs one case: {@code --child <image> <script>}.
+     *
+     * @param args the arguments.
+     * @throws Exception if a case cannot be run.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && args[0].equals(CHILD_ARG)) {
+            runChild(args[1], args[2]);
+            return;
+        }
+        boolean update = Arrays.asList(args).contains(UPDATE_ARG);
+        RegressionHarness harness = new RegressionHarness(new File(System.getProperty("regression.root", ".")));
+        if (!harness.runAll(update)) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs one case in the current JVM and reports its measurements on the error stream.
+     *
+     * @param image the image file.
+     * @param script the script file.
+     * @throws IOException if the script cannot be read or the render server check fails.
+     */
+    private static void runChild(String image, String script) throws IOException {
+        String serverQuery = null;
+        for (String line : Files.readAllLines(Path.of(script), StandardCharsets.UTF_8)) {
+            if (line.startsWith(SERVER_HEADER)) {
+                serverQuery = line.substring(SERVER_HEADER.length()).strip();
+            }
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long startBytes = threads.getCurrentThreadAllocatedBytes();
+        long startTime = System.nanoTime();
+        if (serverQuery == null) {
+            Shell.main(new String[]{image, script});
+        } else {
+            PrintStream stdout = System.out;
+            ByteArrayOutputStream shellOutput = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(shellOutput, true, StandardCharsets.UTF_8));
+            try {
+                Shell.main(new String[]{image, script});
+            } finally {
+                System.setOut(stdout);
+            }
+            stdout.write(shellOutput.toByteArray());
+            RenderServerCheck.run(new File(image), serverQuery, stripBatchSummary(shellOutput.toByteArray()),
+                    new File(Constants.OUTPUT_FILE_NAME), stdout);
+        }
+        long wallNanos = System.nanoTime() - startTime;
+        long allocatedBytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+        long peakHeapBytes = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+        System.out.flush();
+        System.err.printf("%s%.3f %.3f %.3f%n", METRICS_PREFIX, wallNanos / 1e6,
+                peakHeapBytes / 1048576.0, allocatedBytes / 1048576.0);
+    }
+
+    /**
+     * Runs all cases.
+     *
+     * @param update true to record goldens and budgets, false to check against them.
+     * @return true if every case passed (always, when recording).
+     * @throws IOException if a case cannot be run or its files cannot be accessed.
+     * @throws InterruptedException if interrupted while waiting for a case.
+     */
+    public boolean runAll(boolean update) throws IOException, InterruptedException {
+        File budgetsFile = new File(harnessDirectory, "budgets.properties");
+        Properties budgets = new Properties();
+        if (budgetsFile.isFile()) {
+            try (InputStream stream = new FileInputStream(budgetsFile)) {
+                budgets.load(stream);
+            }
+        }
+        File[] cases = new File(harnessDirectory, "cases").listFiles((dir, name) -> name.endsWith(".txt"));
+        if (cases == null || cases.length == 0) {
+            throw new IOException("No regression cases in " + harnessDirectory);
+        }
+        Arrays.sort(cases);
+
+        boolean passed = true;
+        TreeMap<String, String> recorded = new TreeMap<>();
+        System.out.printf("%-24s %10s %12s %12s  %s%n", "case", "wall ms", "peak heap MB", "alloc MB", "result");
+        for (File caseFile : cases) {
+            String name = caseFile.getName().substring(0, caseFile.getName().length() - ".txt".length());
+            File image = resolveImage(caseFile);
+            byte[] output = null;
+            double[] best = null;
+            for (int run = 0; run < RUNS; run++) {
+                CaseRun caseRun = runCase(image, caseFile);
+                if (output != null && !Arrays.equals(output, caseRun.output)) {
+                    throw new IOException("Case " + name + " printed different output on different runs");
+                }
+                output = caseRun.output;
+                best = best == null ? caseRun.metrics : min(best, caseRun.metrics);
+            }
+
+            File golden = new File(new File(harnessDirectory, "goldens"), name + ".txt");
+            List<String> failures = new ArrayList<>();
+            if (update) {
+                golden.getParentFile().mkdirs();
+                Files.write(golden.toPath(), output);
+                for (int i = 0; i < METRICS.length; i++) {
+                    recorded.put(name + "." + METRICS[i], String.format("%.1f", best[i]));
+                }
+            } else {
+                if (!golden.isFile()) {
+                    failures.add("no golden");
+                } else if (!Arrays.equals(Files.readAllBytes(golden.toPath()), output)) {
+                    failures.add("output differs from golden at line "
+                            + firstDifferentLine(Files.readAllBytes(golden.toPath()), output));
+                }
+                for (int i = 0; i < METRICS.length; i++) {
+                    String budget = budgets.getProperty(name + "." + METRICS[i]);
+                    if (budget == null) {
+                        failures.add("no " + METRICS[i] + " budget");
+                        continue;
+                    }
+                    double threshold = Double.parseDouble(budgets.getProperty("threshold." + METRICS[i],
+                            String.valueOf(DEFAULT_THRESHOLD)));
+                    double limit = Double.parseDouble(budget) * (1 + threshold);
+                    if (best[i] > limit) {
+                        failures.add(String.format("%s %.1f over budget %s (limit %.1f)",
+                                METRICS[i], best[i], budget, limit));
+                    }
+                }
+            }
+            passed &= failures.isEmpty();
+            System.out.printf("%-24s %10.1f %12.1f %12.1f  %s%n", name, best[0], best[1], best[2],
+                    update ? "recorded" : failures.isEmpty() ? "ok" : "FAILED: " + String.join("; ", failures));
+        }
+
+        if (update) {
+            writeBudgets(budgetsFile, budgets, recorded);
+        }
+        return passed;
+    }
+
+    /**
+     * Finds the image file of a case, writing it first if it is generated.
+     *
+     * @param caseFile the script of the case.
+     * @return the image file.
+     * @throws IOException if the script has no image header or the image cannot be written.
+     */
+    private File resolveImage(File caseFile) throws IOException {
+        List<String> lines = Files.readAllLines(caseFile.toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).startsWith(IMAGE_HEADER)) {
+            throw new IOException("Case " + caseFile + " does not start with \"" + IMAGE_HEADER + "\"");
+        }
+        String image = lines.get(0).substring(IMAGE_HEADER.length()).strip();
+        if (!image.startsWith(GENERATED_IMAGE)) {
+            return new File(root, image);
+        }
+        String[] dimensions = image.substring(GENERATED_IMAGE.length()).split("x");
+        return GeneratedImages.write(new File(harnessDirectory, "build/images"),
+                Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+    }
+
+    /**
+     * Runs a case once, in a new JVM. The JVM runs in an empty temporary directory of its own,
+     * which is also its temporary directory, so every run is measured without the caches
+     * earlier runs left on disk, and the files cases write never land in the project.
+     *
+     * @param image the image file.
+     * @param script the script file.
+     * @return the output and measurements of the run.
+     * @throws IOException if the JVM cannot be started or reports no measurements.
+     * @throws InterruptedException if interrupted while waiting for the JVM.
+     */
+    private CaseRun runCase(File image, File script) throws IOException, InterruptedException {
+        Path temporaryDirectory = Files.createTempDirectory("regression");
+        try {
+            return runCase(image, script, temporaryDirectory);
+        } finally {
+            try (Stream<Path> paths = Files.walk(temporaryDirectory)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Runs a case once, in a new JVM with the given temporary directory.
+     *
+     * @param image the image file.
+     * @param script the script file.
+     * @param temporaryDirectory the temporary directory of the JVM.
+     * @return the output and measurements of the run.
+     * @throws IOException if the JVM cannot be started or reports no measurements.
+     * @throws InterruptedException if interrupted while waiting for the JVM.
+     */
+    private CaseRun runCase(File image, File script, Path temporaryDirectory)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(CHILD_JVM_OPTIONS);
+        command.add("-Djava.io.tmpdir=" + temporaryDirectory);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(RegressionHarness.class.getName());
+        command.add(CHILD_ARG);
+        command.add(image.getAbsolutePath());
+        command.add(script.getAbsolutePath());
+        Process process = new ProcessBuilder(command).directory(temporaryDirectory.toFile()).start();
+        CompletableFuture<byte[]> errors = CompletableFuture.supplyAsync(() -> readFully(process.getErrorStream()));
+        byte[] output = readFully(process.getInputStream());
+        String errorText = new String(errors.join(), StandardCharsets.UTF_8);
+        if (process.waitFor() != 0 || !errorText.contains(METRICS_PREFIX)) {
+            throw new IOException("Case " + script.getName() + " failed:" + System.lineSeparator() + errorText);
+        }
+        String[] values = errorText.substring(errorText.lastIndexOf(METRICS_PREFIX) + METRICS_PREFIX.length())
+                .strip().split(" ");
+        double[] metrics = new double[METRICS.length];
+        for (int i = 0; i < metrics.length; i++) {
+            metrics[i] = Double.parseDouble(values[i]);
+        }
+        return new CaseRun(stripBatchSummary(output), metrics);
+    }
+
+    /**
+     * Reads a stream to its end.
+     *
+     * @param stream the stream.
+     * @return the bytes read.
+     */
+    private static byte[] readFully(InputStream stream) {
+        try (stream) {
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            return new byte[0];
+        }
+    }
+
+    /**
+     * Removes the batch summary lines, whose numbers differ between runs, from an output.
+     *
+     * @param output the output of a case.
+     * @return the output without its summary lines.
+     */
+    private static byte[] stripBatchSummary(byte[] output) {
+        ByteArrayOutputStream stripped = new ByteArrayOutputStream(output.length);
+        String text = new String(output, StandardCharsets.UTF_8);
+        for (String line : text.split("(?<=\n)")) {
+            if (!line.startsWith(SUMMARY_PREFIX) && !line.startsWith(METRICS_JSON_PREFIX)) {
+                stripped.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return stripped.toByteArray();
+    }
+
+    /**
+     * Finds the first line two outputs differ on.
+     *
+     * @param expected the expected output.
+     * @param actual the actual output.
+     * @return the number of the first different line, from 1.
+     */
+    private static int firstDifferentLine(byte[] expected, byte[] actual) {
+        int line = 1;
+        for (int i = 0; i < Math.min(expected.length, actual.length) && expected[i] == actual[i]; i++) {
+            if (expected[i] == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Takes the element-wise minimum of two measurements.
+     *
+     * @param first the first measurements.
+     * @param second the second measurements.
+     * @return the minimum of every metric.
+     */
+    private static double[] min(double[] first, double[] second) {
+        double[] min = new double[first.length];
+        for (int i = 0; i < min.length; i++) {
+            min[i] = Math.min(first[i], second[i]);
+        }
+        return min;
+    }
+
+    /**
+     * Writes the budgets file, keeping the thresholds already in it.
+     *
+     * @param budgetsFile the budgets file.
+     * @param previous the previous budgets, holding the thresholds.
+     * @param recorded the recorded budgets, by key.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void writeBudgets(File budgetsFile, Properties previous, TreeMap<String, String> recorded)
+            throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append("# Budgets of the regression cases, recorded with --update.").append(System.lineSeparator());
+        text.append("# A case fails when a metric exceeds its budget by more than the metric's threshold.")
+                .append(System.lineSeparator());
+        for (String metric : METRICS) {
+            text.append("threshold.").append(metric).append('=')
+                    .append(previous.getProperty("threshold." + metric, String.valueOf(DEFAULT_THRESHOLD)))
+                    .append(System.lineSeparator());
+        }
+        for (String key : recorded.keySet()) {
+            text.append(key).append('=').append(recorded.get(key)).append(System.lineSeparator());
+        }
+        try (OutputStream stream = new FileOutputStream(budgetsFile)) {
+            stream.write(text.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * The output and measurements of one run of a case.
+     */
+    private static final class CaseRun {
+
+        /** The output, without the batch summary lines. */
+        private final byte[] output;
+
+        /** The measurements, in the order of {@link #METRICS}. */
+        private final double[] metrics;
+
+        /**
+         * Constructs a run.
+         *
+         * @param output the output, without the batch summary lines.
+         * @param metrics the measurements.
+         */
+        private CaseRun(byte[] output, double[] metrics) {
+            this.output = output;
+            this.metrics = metrics;
+        }
+    }
+}
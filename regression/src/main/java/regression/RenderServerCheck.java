@@ -0,0 +1,207 @@
+package regression;
+
+import ascii_art.RenderMetrics;
+import ascii_art.RenderServer;
+import constants.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The RenderServerCheck class runs a {@link RenderServer} on a free local port and checks it
+ * against the renders of the shell, for regression cases with a {@code # server: <query>}
+ * header.
+ *
+ * <p>The script of such a case renders the image once to the console and then once to HTML,
+ * printing nothing else but resolution messages. The server is then sent the same image with
+ * the query of the header, for both outputs, and must answer with the same text. It is also
+ * sent the requests it must reject: a GET, a resolution out of bounds, a file that is not an
+ * image, a file beyond the size limit, and a render beyond the limit of renders in flight.
+ * Every check reports one line, so the golden of the case records what the server answered.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class RenderServerCheck {
+
+    /** Path of the render endpoint. */
+    private static final String RENDER_PATH = "/render";
+
+    /** A resolution no image allows, since it is not a power of 2. */
+    private static final String BAD_RESOLUTION_QUERY = "res=3";
+
+    /** Largest number of renders held open while waiting for the server to turn one away. */
+    private static final int MAX_HELD_RENDERS = 256;
+
+    /** Private constructor, since the class only has static members. */
+    private RenderServerCheck() {
+    }
+
+    /**
+     * Checks a render server against the renders of the shell, reporting a line per check.
+     *
+     * @param image the image file.
+     * @param query the query of the requests equal to the renders of the shell.
+     * @param shellOutput the output of the shell without its batch summary lines, holding its
+     *                    console render.
+     * @param shellHtml the HTML file the shell rendered to.
+     * @param report the stream the checks are reported on.
+     * @throws IOException if the server cannot be started or a request fails.
+     */
+    public static void run(File image, String query, byte[] shellOutput, File shellHtml, PrintStream report)
+            throws IOException {
+        byte[] body = Files.readAllBytes(image.toPath());
+        byte[] consoleRender = consoleRender(shellOutput);
+        byte[] htmlRender = Files.readAllBytes(shellHtml.toPath());
+
+        RenderServer server = new RenderServer(0);
+        server.start();
+        try {
+            String base = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                    + server.getPort() + RENDER_PATH;
+            RenderMetrics.setEnabled(true);
+            RenderMetrics.reset();
+
+            Response console = send(base, "POST", query + "&output=console", body);
+            report.println("console render: " + console.status + ", "
+                    + (Arrays.equals(console.body, consoleRender) ? "same as" : "differs from") + " the shell");
+            Response html = send(base, "POST", query + "&output=html", body);
+            report.println("html render: " + html.status + ", "
+                    + (Arrays.equals(html.body, htmlRender) ? "same as" : "differs from") + " the shell");
+            Response again = send(base, "POST", query + "&output=console", body);
+            report.println("console render again: " + again.status + ", "
+                    + (Arrays.equals(again.body, console.body) ? "same as" : "differs from") + " the first");
+            report.println("image decodes: " + RenderMetrics.getMisses(RenderMetrics.Stage.IMAGE_DECODE)
+                    + " missed, " + RenderMetrics.getHits(RenderMetrics.Stage.IMAGE_DECODE) + " cached");
+
+            report.println("GET: " + send(base, "GET", query, null).status);
+            report.println("bad resolution: " + send(base, "POST", BAD_RESOLUTION_QUERY, body).status);
+            report.println("not an image: " + send(base, "POST", query, new byte[0]).status);
+            report.println("too large: "
+                    + send(base, "POST", query, new byte[Constants.SERVER_MAX_BODY_BYTES + 1]).status);
+            report.println("beyond the renders in flight: " + sendBeyondInFlight(server.getPort(), base, query));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Takes the console render out of the output of the shell, by dropping its resolution
+     * messages.
+     *
+     * @param shellOutput the output of the shell, without its batch summary lines.
+     * @return the console render.
+     */
+    private static byte[] consoleRender(byte[] shellOutput) {
+        ByteArrayOutputStream render = new ByteArrayOutputStream(shellOutput.length);
+        for (String line : new String(shellOutput, StandardCharsets.UTF_8).split("(?<=\n)")) {
+            if (!line.startsWith(Constants.NEW_RES_MESSAGE)) {
+                render.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return render.toByteArray();
+    }
+
+    /**
+     * Holds renders open, each waiting for the rest of its image file, until the server turns
+     * away a render for having too many in flight.
+     *
+     * @param port the port of the server.
+     * @param base the URL of the render endpoint.
+     * @param query the query of the renders.
+     * @return the status the server turned the render away with, or the last status if it
+     *         never did.
+     * @throws IOException if a request fails.
+     */
+    private static int sendBeyondInFlight(int port, String base, String query) throws IOException {
+        List<Socket> held = new ArrayList<>();
+        try {
+            int status = send(base, "POST", query, new byte[0]).status;
+            while (status != 503 && held.size() < MAX_HELD_RENDERS) {
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                held.add(socket);
+                socket.getOutputStream().write(("POST " + RENDER_PATH + "?" + query + " HTTP/1.1\r\n"
+                        + "Host: localhost\r\nContent-Length: 1\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                socket.getOutputStream().flush();
+                status = send(base, "POST", query, new byte[0]).status;
+            }
+            return status;
+        } finally {
+            for (Socket socket : held) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Sends a request to the render endpoint.
+     *
+     * @param base the URL of the render endpoint.
+     * @param method the request method.
+     * @param query the query string.
+     * @param body the request body, or null for none.
+     * @return the response.
+     * @throws IOException if the request fails.
+     */
+    private static Response send(String base, String method, String query, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + "?" + query).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream stream = connection.getOutputStream()) {
+                    stream.write(body);
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            byte[] responseBody;
+            if (stream == null) {
+                responseBody = new byte[0];
+            } else {
+                try (stream) {
+                    responseBody = stream.readAllBytes();
+                }
+            }
+            return new Response(status, responseBody);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * The status and body of a response.
+     */
+    private static final class Response {
+
+        /** The HTTP status code. */
+        private final int status;
+
+        /** The response body. */
+        private final byte[] body;
+
+        /**
+         * Constructs a response.
+         *
+         * @param status the HTTP status code.
+         * @param body the response body.
+         */
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -1,20 +1,39 @@
 package ascii_art;
 
+import ascii_output.CharGrid;
+import constants.Constants;
+import exceptions.RenderCancelledException;
+import image.CellSums;
 import image.Image;
 import image.ImageEditor;
+import image.RowSourceImage;
 import image_char_matching.SubImgCharMatcher;
+import render_events.BrightnessGridEvent;
+import render_events.RenderEvent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
 /**
  * The AsciiArtAlgorithm class generates ASCII art representations of an image.
- * It converts the image into a 2D character array based on brightness levels.
+ * It converts the image into a grid of characters based on brightness levels.
  * This class manages resolution, character matching, and uses a singleton to maintain state.
  *
  * @author Joshua Kolodny, Itamar Lev Ari
  */
 public class AsciiArtAlgorithm {
 
-    /** The input image to be processed. */
-    private final Image image;
+    /** Supplies the input image to be processed, or null if its rows are read from elsewhere. */
+    private final Supplier<Image> image;
+
+    /** The input image whose rows are read on every brightness calculation, or null. */
+    private final RowSourceImage rowSourceImage;
 
     /** The resolution of the ASCII art output. */
     private final int resolution;
@@ -25,6 +44,18 @@ public class AsciiArtAlgorithm {
     /** Singleton instance for maintaining state across runs. */
     private final AsciiArtSingleton singleton;
 
+    /** The disk cache consulted before touching pixels, or null. */
+    private BrightnessCache brightnessCache;
+
+    /** The content hash of the image, keying it in the disk cache. */
+    private String imageHash;
+
+    /** The brightness grids calculated for the image by earlier runs, by resolution, or null. */
+    private Map<Integer, BrightnessCache.Grid> imageGrids;
+
+    /** The average colors of the sub-images of the last approximate result, or null. */
+    private int[][] approximateColors;
+
     /**
      * Constructs a new AsciiArtAlgorithm instance with the given image, resolution, and matcher.
      *
@@ -33,49 +64,585 @@ public class AsciiArtAlgorithm {
      * @param matcher the matcher for character selection based on brightness.
      */
     public AsciiArtAlgorithm(Image image, int resolution, SubImgCharMatcher matcher) {
-        this.image = image;
+        this(image, resolution, matcher, AsciiArtSingleton.getInstance());
+    }
+
+    /**
+     * Constructs a new AsciiArtAlgorithm instance that keeps its state in the given instance
+     * rather than the shared singleton.
+     *
+     * @param image the input image to process.
+     * @param resolution the desired resolution for ASCII art.
+     * @param matcher the matcher for character selection based on brightness.
+     * @param singleton the state instance to use.
+     */
+    AsciiArtAlgorithm(Image image, int resolution, SubImgCharMatcher matcher, AsciiArtSingleton singleton) {
+        this.image = () -> image;
+        this.rowSourceImage = null;
         this.resolution = resolution;
         this.matcher = matcher;
-        this.singleton = AsciiArtSingleton.getInstance();
+        this.singleton = singleton;
+    }
+
+    /**
+     * Constructs a new AsciiArtAlgorithm instance that only obtains the image if it needs
+     * its pixels, so that a cached brightness grid spares loading it.
+     *
+     * @param imageLoader supplies the input image to process.
+     * @param resolution the desired resolution for ASCII art.
+     * @param matcher the matcher for character selection based on brightness.
+     */
+    public AsciiArtAlgorithm(Supplier<Image> imageLoader, int resolution, SubImgCharMatcher matcher) {
+        this(imageLoader, resolution, matcher, AsciiArtSingleton.getInstance());
+    }
+
+    /**
+     * Constructs a new AsciiArtAlgorithm instance that only obtains the image if it needs
+     * its pixels, and keeps its state in the given instance rather than the shared singleton.
+     *
+     * @param imageLoader supplies the input image to process.
+     * @param resolution the desired resolution for ASCII art.
+     * @param matcher the matcher for character selection based on brightness.
+     * @param singleton the state instance to use.
+     */
+    AsciiArtAlgorithm(Supplier<Image> imageLoader, int resolution, SubImgCharMatcher matcher,
+                      AsciiArtSingleton singleton) {
+        this.image = imageLoader;
+        this.rowSourceImage = null;
+        this.resolution = resolution;
+        this.matcher = matcher;
+        this.singleton = singleton;
+    }
+
+    /**
+     * Constructs a new AsciiArtAlgorithm instance that reads the rows of the image
+     * (from its file in bands, or from off-heap memory) whenever it needs brightness
+     * values, never holding it as an {@link Image}. Its results are identical to those
+     * of the same image in memory.
+     *
+     * @param rowSourceImage the input image to process.
+     * @param resolution the desired resolution for ASCII art.
+     * @param matcher the matcher for character selection based on brightness.
+     */
+    public AsciiArtAlgorithm(RowSourceImage rowSourceImage, int resolution, SubImgCharMatcher matcher) {
+        this(rowSourceImage, resolution, matcher, AsciiArtSingleton.getInstance());
+    }
+
+    /**
+     * Constructs a new AsciiArtAlgorithm instance that reads the rows of the image whenever
+     * it needs brightness values, and keeps its state in the given instance rather than the
+     * shared singleton.
+     *
+     * @param rowSourceImage the input image to process.
+     * @param resolution the desired resolution for ASCII art.
+     * @param matcher the matcher for character selection based on brightness.
+     * @param singleton the state instance to use.
+     */
+    AsciiArtAlgorithm(RowSourceImage rowSourceImage, int resolution, SubImgCharMatcher matcher,
+                      AsciiArtSingleton singleton) {
+        this.image = null;
+        this.rowSourceImage = rowSourceImage;
+        this.resolution = resolution;
+        this.matcher = matcher;
+        this.singleton = singleton;
+    }
+
+    /**
+     * Makes the algorithm consult a disk cache of brightness grids before touching pixels,
+     * and store the grids it calculates in it.
+     *
+     * @param brightnessCache the cache.
+     * @param imageHash the content hash of the image.
+     */
+    public void useBrightnessCache(BrightnessCache brightnessCache, String imageHash) {
+        this.brightnessCache = brightnessCache;
+        this.imageHash = imageHash;
+    }
+
+    /**
+     * Makes the algorithm look up the brightness grids of earlier runs on the same image,
+     * kept in memory, before the disk cache, and add the grids it obtains to them.
+     *
+     * @param imageGrids the grids of the image, by resolution.
+     */
+    public void useImageGrids(Map<Integer, BrightnessCache.Grid> imageGrids) {
+        this.imageGrids = imageGrids;
     }
 
     /**
      * Runs the ASCII art generation algorithm and returns the resulting character array.
+     * The run can be cancelled by interrupting its thread, which it checks once per row of
+     * sub-images.
      *
-     * @return a 2D character array representing the ASCII art.
+     * @return a grid of chars representing the ASCII art.
+     * @throws UncheckedIOException if the rows of the image cannot be read.
+     * @throws RenderCancelledException if the thread was interrupted; the state of the
+     *                                  previous run is then left unchanged.
      */
-    public char[][] run() {
+    public CharGrid run() {
+        RenderEvent event = new RenderEvent();
+        event.begin();
         // Case: All parameters remain the same
-        if (resolution == singleton.getPrevResolution() && singleton.isSameCharset()) {
-            return singleton.getPrevImage(); // Return cached result
+        if (resolution == singleton.getPrevResolution() && singleton.isSameCharset()
+                && singleton.isSameRoundStrategy()) {
+            RenderMetrics.hit(RenderMetrics.Stage.BRIGHTNESS);
+            RenderMetrics.hit(RenderMetrics.Stage.MATCHING);
+            CharGrid prevImage = singleton.getPrevImage(); // Return cached result
+            event.finish(singleton.getSessionId(), resolution, RenderEvent.RESULT_HIT,
+                    prevImage.getWidth() * prevImage.getHeight());
+            return prevImage;
         }
 
-        // Adjust the image to fit the desired resolution
-        Image paddedImage = ImageEditor.padImage(image);
-        Image[][] subImages = ImageEditor.createSubImages(paddedImage, resolution);
-        char[][] resultImage = new char[subImages.length][subImages[0].length];
+        double[][] subImageBrightnesses;
+        int[][] subImageColors;
+        String cacheOutcome;
+        BrightnessCache.Grid cachedGrid;
+        if (resolution == singleton.getPrevResolution()) {
+            // Use cached brightness if resolution hasn't changed, without touching the image
+            RenderMetrics.hit(RenderMetrics.Stage.BRIGHTNESS);
+            subImageBrightnesses = singleton.getPrevSubImagesBrightnesses();
+            subImageColors = singleton.getPrevSubImagesColors();
+            cacheOutcome = RenderEvent.BRIGHTNESS_HIT;
+        } else if (imageGrids != null && (cachedGrid = imageGrids.get(resolution)) != null) {
+            // Use the brightness of an earlier run on this image at this resolution
+            RenderMetrics.hit(RenderMetrics.Stage.BRIGHTNESS);
+            subImageBrightnesses = cachedGrid.getBrightnesses();
+            subImageColors = cachedGrid.getColors();
+            cacheOutcome = RenderEvent.BRIGHTNESS_HIT;
+        } else if ((cachedGrid = loadCachedGrid(resolution)) != null) {
+            // Use the brightness calculated by a previous process, without touching the image
+            RenderMetrics.hit(RenderMetrics.Stage.BRIGHTNESS);
+            subImageBrightnesses = cachedGrid.getBrightnesses();
+            subImageColors = cachedGrid.getColors();
+            rememberGrid(resolution, cachedGrid);
+            cacheOutcome = RenderEvent.DISK_HIT;
+        } else {
+            RenderMetrics.miss(RenderMetrics.Stage.BRIGHTNESS);
+            BrightnessGridEvent gridEvent = new BrightnessGridEvent();
+            gridEvent.begin();
+            long gridStart = System.nanoTime();
+            long pixels;
+            if (rowSourceImage != null) {
+                subImageColors = new int[rowSourceImage.getGridRows(resolution)]
+                        [rowSourceImage.getGridColumns(resolution)];
+                subImageBrightnesses = calculateRowSourceBrightnesses(subImageColors);
+                pixels = (long) rowSourceImage.getPaddedWidth() * rowSourceImage.getPaddedHeight();
+            } else {
+                Image[][] subImages = createSubImages();
+                checkCancelled();
+                subImageBrightnesses = new double[subImages.length][subImages[0].length];
+                // Average colors are collected in the same pass as brightness
+                subImageColors = new int[subImages.length][subImages[0].length];
+                calculateBrightnesses(subImages, subImageBrightnesses, subImageColors);
+                int subImageDimension = subImages[0][0].getWidth();
+                pixels = (long) subImages.length * subImages[0].length * subImageDimension * subImageDimension;
+            }
+            RenderCostModel.recordGrid(pixels, System.nanoTime() - gridStart);
+            gridEvent.finish(singleton.getSessionId(), resolution, subImageBrightnesses.length,
+                    subImageBrightnesses[0].length);
+            checkCancelled();
+            if (brightnessCache != null) {
+                brightnessCache.store(imageHash, resolution, subImageBrightnesses, subImageColors);
+            }
+            rememberGrid(resolution, new BrightnessCache.Grid(subImageBrightnesses, subImageColors));
+            cacheOutcome = RenderEvent.MISS;
+        }
+
+        // Map brightness to characters
+        RenderMetrics.miss(RenderMetrics.Stage.MATCHING);
+        long matchingStart = System.nanoTime();
+        CharGrid resultImage = matchChars(subImageBrightnesses);
+        RenderCostModel.recordMatching((long) resultImage.getWidth() * resultImage.getHeight(),
+                System.nanoTime() - matchingStart);
+
+        // Update the singleton with the new results
+        singleton.updateSingleton(resultImage, subImageBrightnesses, subImageColors, resolution);
+        event.finish(singleton.getSessionId(), resolution, cacheOutcome,
+                resultImage.getWidth() * resultImage.getHeight());
+        return resultImage;
+    }
+
+    /**
+     * Renders a quick approximation of what {@link #run} would render, from brightness
+     * sampled on a sparse lattice of pixels of every sub-image, dense enough to be calculated
+     * within a time budget. The state of the previous run is left unchanged.
+     *
+     * <p>There is no preview if run would reuse a brightness grid anyway, if the image is
+     * not held in memory, or if the budget suffices to sample every pixel.</p>
+     *
+     * @param budgetMillis the time budget of the preview, in milliseconds.
+     * @return the approximate ASCII art, or null if there is no preview.
+     * @throws UncheckedIOException if the image cannot be read.
+     */
+    public CharGrid preview(long budgetMillis) {
+        approximateColors = null;
+        if (rowSourceImage != null || resolution == singleton.getPrevResolution()
+                || (imageGrids != null && imageGrids.containsKey(resolution))
+                || (brightnessCache != null && brightnessCache.contains(imageHash, resolution))) {
+            return null;
+        }
+        Image paddedImage = paddedImage();
+        int subImageDimension = paddedImage.getWidth() / resolution;
+        long subImages = (long) resolution * (paddedImage.getHeight() / subImageDimension);
+        long samplesPerSubImage = budgetMillis * Constants.PREVIEW_SAMPLES_PER_MILLI / subImages;
+        int samplesPerSide = (int) Math.max(1, Math.sqrt(samplesPerSubImage));
+        if (samplesPerSide >= subImageDimension) {
+            return null;
+        }
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.BRIGHTNESS);
+        int[][] colors = new int[(int) (subImages / resolution)][resolution];
+        double[][] brightnesses = ImageEditor.calculateSampledBrightnesses(paddedImage, resolution,
+                samplesPerSide, colors);
+        RenderMetrics.end(measurement);
+        approximateColors = colors;
+        return matchChars(brightnesses);
+    }
+
+    /**
+     * Gets the best result available without calculating any brightness, for a run that
+     * was cancelled: the ASCII art of the finest resolution coarser than this one whose
+     * brightness grid is kept for the image, with the current charset, or else the result
+     * of the previous run. The state of the previous run is left unchanged.
+     *
+     * @return the ASCII art, or null if there is none.
+     */
+    public CharGrid bestAvailable() {
+        approximateColors = null;
+        int bestResolution = 0;
+        if (imageGrids != null) {
+            for (int gridResolution : imageGrids.keySet()) {
+                if (gridResolution < resolution && gridResolution > bestResolution) {
+                    bestResolution = gridResolution;
+                }
+            }
+        }
+        if (bestResolution > 0) {
+            BrightnessCache.Grid grid = imageGrids.get(bestResolution);
+            approximateColors = grid.getColors();
+            return matchChars(grid.getBrightnesses());
+        }
+        approximateColors = singleton.getPrevSubImagesColors();
+        return singleton.getPrevImage();
+    }
 
-        // Update brightness calculations and generate ASCII art
-        double[][] prevSubImageBrightnesses = singleton.getPrevSubImagesBrightnesses();
-        double[][] newSubImageBrightnesses = new double[subImages.length][subImages[0].length];
+    /**
+     * Calculates the brightness grids of the image at several resolutions in a single pass
+     * over its pixels. The cells of the finest resolution whose grid is not kept are summed
+     * from the pixels, and those of every coarser one are aggregated from the sums of the
+     * resolution twice finer, so the pixels are never read again. Kept grids are reused, and
+     * the new grid of the finest resolution is kept like those of {@link #run}. The state of
+     * the previous run is left unchanged.
+     *
+     * <p>The grids of the finest calculated resolution are identical to those of run; those
+     * of coarser ones may differ from them by floating-point rounding, so they are returned
+     * but never kept, and a later render at their resolution sums its cells from the pixels
+     * again.</p>
+     *
+     * @param resolutions the resolutions, powers of two within the bounds of the image.
+     * @return the grids, by resolution.
+     * @throws UncheckedIOException if the image cannot be read.
+     * @throws RenderCancelledException if the thread was interrupted.
+     */
+    public Map<Integer, BrightnessCache.Grid> calculateGrids(int[] resolutions) {
+        Map<Integer, BrightnessCache.Grid> grids = new HashMap<>();
+        TreeSet<Integer> missingResolutions = new TreeSet<>(Comparator.reverseOrder());
+        for (int gridResolution : resolutions) {
+            BrightnessCache.Grid grid = findGrid(gridResolution);
+            if (grid != null) {
+                RenderMetrics.hit(RenderMetrics.Stage.BRIGHTNESS);
+                grids.put(gridResolution, grid);
+            } else {
+                missingResolutions.add(gridResolution);
+            }
+        }
+        if (missingResolutions.isEmpty()) {
+            return grids;
+        }
 
+        RenderMetrics.miss(RenderMetrics.Stage.BRIGHTNESS);
+        BrightnessGridEvent gridEvent = new BrightnessGridEvent();
+        gridEvent.begin();
+        long gridStart = System.nanoTime();
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.BRIGHTNESS);
+        // Finest first: every coarser level is aggregated from the one before it
+        int finestResolution = missingResolutions.first();
+        int sumsResolution = finestResolution;
+        CellSums sums = sumCells(sumsResolution);
+        long pixels = (long) sums.getRows() * sums.getColumns() * sums.getCellSize() * sums.getCellSize();
+        gridEvent.finish(singleton.getSessionId(), sumsResolution, sums.getRows(), sums.getColumns());
+        for (int gridResolution : missingResolutions) {
+            while (sumsResolution > gridResolution) {
+                sums = sums.coarsen();
+                sumsResolution /= 2;
+            }
+            int[][] colors = new int[sums.getRows()][sums.getColumns()];
+            BrightnessCache.Grid grid = new BrightnessCache.Grid(sums.toBrightnesses(colors), colors);
+            if (gridResolution == finestResolution) {
+                if (brightnessCache != null) {
+                    brightnessCache.store(imageHash, gridResolution, grid.getBrightnesses(), colors);
+                }
+                rememberGrid(gridResolution, grid);
+            }
+            grids.put(gridResolution, grid);
+        }
+        RenderMetrics.end(measurement);
+        RenderCostModel.recordGrid(pixels, System.nanoTime() - gridStart);
+        return grids;
+    }
+
+    /**
+     * Maps the brightness grid of a resolution to characters with the current charset,
+     * leaving the state of the previous run unchanged.
+     *
+     * @param grid the brightness grid.
+     * @return a grid of chars representing the ASCII art.
+     */
+    public CharGrid match(BrightnessCache.Grid grid) {
+        RenderMetrics.miss(RenderMetrics.Stage.MATCHING);
+        return matchChars(grid.getBrightnesses());
+    }
+
+    /**
+     * Gets the average colors of the sub-images of the last preview or best available
+     * result.
+     *
+     * @return the colors, packed as 0xRRGGBB, or null if there was no such result.
+     */
+    public int[][] getApproximateColors() {
+        return approximateColors;
+    }
+
+    /**
+     * Runs the algorithm on an edited version of the image of the previous run, at the same
+     * resolution, recalculating the brightness of only the sub-images whose pixels changed.
+     * If the previous run was at another resolution or its image had other dimensions,
+     * nothing of it is reused and the algorithm runs in full.
+     *
+     * @param prevChecksums the checksums of the sub-images of the previous run's image, from
+     *                      {@link ImageEditor#calculateSubImageChecksums}.
+     * @param checksums the checksums of the sub-images of the image.
+     * @return a grid of chars representing the ASCII art.
+     * @throws UncheckedIOException if the image cannot be read.
+     * @throws RenderCancelledException if the thread was interrupted.
+     */
+    public CharGrid runEdited(long[][] prevChecksums, long[][] checksums) {
+        double[][] prevBrightnesses = singleton.getPrevSubImagesBrightnesses();
+        if (rowSourceImage != null || resolution != singleton.getPrevResolution()
+                || prevBrightnesses == null || prevBrightnesses.length != checksums.length
+                || prevBrightnesses[0].length != checksums[0].length
+                || prevChecksums.length != checksums.length || prevChecksums[0].length != checksums[0].length) {
+            singleton.changeImage();
+            return run();
+        }
+        RenderEvent event = new RenderEvent();
+        event.begin();
+        RenderMetrics.miss(RenderMetrics.Stage.BRIGHTNESS);
+        BrightnessGridEvent gridEvent = new BrightnessGridEvent();
+        gridEvent.begin();
+
+        // Copy the previous grid, which may be shared with the grids of the previous image
+        double[][] subImageBrightnesses = new double[checksums.length][];
+        int[][] subImageColors = new int[checksums.length][];
+        for (int i = 0; i < checksums.length; i++) {
+            subImageBrightnesses[i] = prevBrightnesses[i].clone();
+            subImageColors[i] = singleton.getPrevSubImagesColors()[i].clone();
+        }
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.PAD_IMAGE);
+        Image paddedImage = ImageEditor.padImage(image.get());
+        RenderMetrics.end(measurement);
+
+        measurement = RenderMetrics.begin(RenderMetrics.Stage.BRIGHTNESS);
+        int subImageDimension = paddedImage.getWidth() / resolution;
+        for (int i = 0; i < checksums.length; i++) {
+            checkCancelled();
+            for (int j = 0; j < checksums[0].length; j++) {
+                if (checksums[i][j] != prevChecksums[i][j]) {
+                    Image subImage = ImageEditor.createSubImage(paddedImage, subImageDimension, i, j);
+                    subImageBrightnesses[i][j] = ImageEditor.calculateBrightness(subImage, subImageColors[i], j);
+                }
+            }
+        }
+        RenderMetrics.end(measurement);
+        gridEvent.finish(singleton.getSessionId(), resolution, subImageBrightnesses.length,
+                subImageBrightnesses[0].length);
+        checkCancelled();
+        if (brightnessCache != null) {
+            brightnessCache.store(imageHash, resolution, subImageBrightnesses, subImageColors);
+        }
+        rememberGrid(resolution, new BrightnessCache.Grid(subImageBrightnesses, subImageColors));
+
+        RenderMetrics.miss(RenderMetrics.Stage.MATCHING);
+        CharGrid resultImage = matchChars(subImageBrightnesses);
+        singleton.updateSingleton(resultImage, subImageBrightnesses, subImageColors, resolution);
+        event.finish(singleton.getSessionId(), resolution, RenderEvent.PARTIAL_HIT,
+                resultImage.getWidth() * resultImage.getHeight());
+        return resultImage;
+    }
+
+    /**
+     * Reads the brightness grid of the image at a resolution from the disk cache.
+     *
+     * @param gridResolution the resolution of the grid.
+     * @return the grid, or null if there is no cache or it misses.
+     */
+    private BrightnessCache.Grid loadCachedGrid(int gridResolution) {
+        return brightnessCache == null ? null : brightnessCache.load(imageHash, gridResolution);
+    }
+
+    /**
+     * Adds a grid to the grids of the image at a resolution, if they are kept.
+     *
+     * @param gridResolution the resolution of the grid.
+     * @param grid the grid.
+     */
+    private void rememberGrid(int gridResolution, BrightnessCache.Grid grid) {
+        if (imageGrids != null) {
+            imageGrids.put(gridResolution, grid);
+        }
+    }
+
+    /**
+     * Finds a kept brightness grid of the image at a resolution: the grid of the previous
+     * run, one of the grids of earlier runs on the image, or one of the disk cache.
+     *
+     * @param gridResolution the resolution of the grid.
+     * @return the grid, or null if none is kept.
+     */
+    private BrightnessCache.Grid findGrid(int gridResolution) {
+        if (gridResolution == singleton.getPrevResolution()) {
+            return new BrightnessCache.Grid(singleton.getPrevSubImagesBrightnesses(),
+                    singleton.getPrevSubImagesColors());
+        }
+        BrightnessCache.Grid grid = imageGrids == null ? null : imageGrids.get(gridResolution);
+        if (grid == null && (grid = loadCachedGrid(gridResolution)) != null) {
+            rememberGrid(gridResolution, grid);
+        }
+        return grid;
+    }
+
+    /**
+     * Sums the cells of the image at a resolution, reading every pixel once.
+     *
+     * @param gridResolution the resolution of the cells.
+     * @return the sums.
+     * @throws UncheckedIOException if the rows of the image cannot be read.
+     * @throws RenderCancelledException if the thread was interrupted.
+     */
+    private CellSums sumCells(int gridResolution) {
+        if (rowSourceImage != null) {
+            try {
+                return rowSourceImage.calculateCellSums(gridResolution);
+            } catch (InterruptedIOException e) {
+                throw new RenderCancelledException();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.PAD_IMAGE);
+        Image paddedImage = paddedImage();
+        RenderMetrics.end(measurement);
+        return CellSums.of(paddedImage, gridResolution);
+    }
+
+    /**
+     * Gets the image padded to power-of-two dimensions, padding it only if it is not
+     * padded yet.
+     *
+     * @return the padded image.
+     */
+    private Image paddedImage() {
+        Image paddedImage = image.get();
+        if (Integer.bitCount(paddedImage.getWidth()) != 1 || Integer.bitCount(paddedImage.getHeight()) != 1) {
+            paddedImage = ImageEditor.padImage(paddedImage);
+        }
+        return paddedImage;
+    }
+
+    /**
+     * Adjusts the image to fit the resolution and splits it into sub-images.
+     *
+     * @return a 2D array of sub-images.
+     */
+    private Image[][] createSubImages() {
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.PAD_IMAGE);
+        Image paddedImage = ImageEditor.padImage(image.get());
+        RenderMetrics.end(measurement);
+
+        measurement = RenderMetrics.begin(RenderMetrics.Stage.SUB_IMAGES);
+        Image[][] subImages = ImageEditor.createSubImages(paddedImage, resolution);
+        RenderMetrics.end(measurement);
+        return subImages;
+    }
+
+    /**
+     * Calculates the brightness and average color of every sub-image.
+     *
+     * @param subImages the sub-images.
+     * @param brightnesses the array to fill with the brightness values.
+     * @param colors the array to fill with the average colors.
+     * @throws RenderCancelledException if the thread was interrupted.
+     */
+    private void calculateBrightnesses(Image[][] subImages, double[][] brightnesses, int[][] colors) {
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.BRIGHTNESS);
         for (int i = 0; i < subImages.length; i++) {
+            checkCancelled();
             for (int j = 0; j < subImages[0].length; j++) {
-                // Use cached brightness if resolution hasn't changed
-                double subImageBrightness = (resolution == singleton.getPrevResolution())
-                        ? prevSubImageBrightnesses[i][j]
-                        : ImageEditor.calculateBrightness(subImages[i][j]);
+                brightnesses[i][j] = ImageEditor.calculateBrightness(subImages[i][j], colors[i], j);
+            }
+        }
+        RenderMetrics.end(measurement);
+    }
+
+    /**
+     * Calculates the brightness and average color of every cell by reading the rows of
+     * the image.
+     *
+     * @param colors the array to fill with the average colors.
+     * @return the brightness values of the cells.
+     * @throws UncheckedIOException if the rows of the image cannot be read.
+     * @throws RenderCancelledException if the thread was interrupted.
+     */
+    private double[][] calculateRowSourceBrightnesses(int[][] colors) {
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.BRIGHTNESS);
+        try {
+            return rowSourceImage.calculateBrightnesses(resolution, colors);
+        } catch (InterruptedIOException e) {
+            throw new RenderCancelledException();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            RenderMetrics.end(measurement);
+        }
+    }
 
-                // Map brightness to a character
-                resultImage[i][j] = matcher.getCharByImageBrightness(subImageBrightness);
+    /**
+     * Stops the run if its thread was interrupted.
+     *
+     * @throws RenderCancelledException if the thread was interrupted.
+     */
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RenderCancelledException();
+        }
+    }
 
-                // Store brightness for future use
-                newSubImageBrightnesses[i][j] = subImageBrightness;
+    /**
+     * Maps every sub-image brightness to a character, filling a single grid row by row.
+     *
+     * @param brightnesses the brightness values of the sub-images.
+     * @return a grid of chars representing the ASCII art.
+     */
+    private CharGrid matchChars(double[][] brightnesses) {
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.MATCHING);
+        CharGrid resultImage = new CharGrid(brightnesses[0].length, brightnesses.length);
+        char[] chars = resultImage.getChars();
+        for (int i = 0; i < brightnesses.length; i++) {
+            int rowStart = resultImage.rowOffset(i);
+            for (int j = 0; j < brightnesses[0].length; j++) {
+                chars[rowStart + j] = matcher.getCharByImageBrightness(brightnesses[i][j]);
             }
         }
-
-        // Update the singleton with the new results
-        singleton.updateSingleton(resultImage, newSubImageBrightnesses, resolution);
+        RenderMetrics.end(measurement);
         return resultImage;
     }
 
@@ -0,0 +1,296 @@
+package ascii_art;
+
+import ascii_output.AsciiOutput;
+import ascii_output.BinaryAsciiOutput;
+import ascii_output.CharGrid;
+import constants.Constants;
+import factories.AsciiOutputFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * The AsciiArtArchive class loads a binary ASCII art archive written by
+ * {@link BinaryAsciiOutput}, without touching the source image.
+ *
+ * <p>The archive file is memory-mapped and decoded in one pass. A loaded archive can be
+ * replayed into any {@link AsciiOutput}, and, if it stores the brightness grid and average
+ * colors, it can warm the render cache of a session (the shell's load command) so the next
+ * render only matches chars.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class AsciiArtArchive {
+
+    /** The ASCII art grid. */
+    private final CharGrid chars;
+
+    /** The charset the grid was matched against. */
+    private final char[] charset;
+
+    /** The name of the rounding strategy the grid was matched with. */
+    private final String roundStrategy;
+
+    /** The sub-image brightnesses, or null if the archive does not store them. */
+    private final double[][] brightnesses;
+
+    /** The sub-image average colors, or null if the archive does not store them. */
+    private final int[][] colors;
+
+    /**
+     * Constructs an archive from its decoded parts.
+     *
+     * @param chars the ASCII art grid.
+     * @param charset the charset the grid was matched against.
+     * @param roundStrategy the name of the rounding strategy.
+     * @param brightnesses the sub-image brightnesses, or null.
+     * @param colors the sub-image average colors, or null.
+     */
+    private AsciiArtArchive(CharGrid chars, char[] charset, String roundStrategy, double[][] brightnesses,
+                            int[][] colors) {
+        this.chars = chars;
+        this.charset = charset;
+        this.roundStrategy = roundStrategy;
+        this.brightnesses = brightnesses;
+        this.colors = colors;
+    }
+
+    /**
+     * Loads an archive by memory-mapping its file.
+     *
+     * @param filename the archive file name.
+     * @return the loaded archive.
+     * @throws IOException if the file cannot be read or is not a valid archive.
+     */
+    public static AsciiArtArchive load(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Decodes an archive from a buffer.
+     *
+     * @param buffer the buffer holding the archive, positioned at its start.
+     * @return the decoded archive.
+     * @throws IOException if the buffer does not hold a valid archive.
+     */
+    private static AsciiArtArchive decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != Constants.ARCHIVE_MAGIC || buffer.get() != Constants.ARCHIVE_VERSION) {
+                throw new IOException(Constants.INVALID_ARCHIVE);
+            }
+            byte flags = buffer.get();
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            char[] charset = readChars(buffer);
+            String roundStrategy = readUtf(buffer);
+            char[] glyphs = readChars(buffer);
+
+            // Runs are stored row-major, as the cells of the grid are
+            CharGrid chars = new CharGrid(columns, rows);
+            int cell = 0;
+            while (cell < rows * columns) {
+                char glyph = glyphs[buffer.get() & 0xFF];
+                int runEnd = cell + readVarInt(buffer);
+                Arrays.fill(chars.getChars(), cell, runEnd, glyph);
+                cell = runEnd;
+            }
+
+            double[][] brightnesses = null;
+            if ((flags & Constants.ARCHIVE_FLAG_BRIGHTNESS) != 0) {
+                brightnesses = new double[rows][columns];
+                for (double[] row : brightnesses) {
+                    buffer.asDoubleBuffer().get(row);
+                    buffer.position(buffer.position() + columns * Double.BYTES);
+                }
+            }
+
+            int[][] colors = null;
+            if ((flags & Constants.ARCHIVE_FLAG_COLORS) != 0) {
+                colors = new int[rows][columns];
+                for (int[] row : colors) {
+                    buffer.asIntBuffer().get(row);
+                    buffer.position(buffer.position() + columns * Integer.BYTES);
+                }
+            }
+            return new AsciiArtArchive(chars, charset, roundStrategy, brightnesses, colors);
+        } catch (RuntimeException e) {
+            throw new IOException(Constants.INVALID_ARCHIVE, e);
+        }
+    }
+
+    /**
+     * Reads a length-prefixed array of chars.
+     *
+     * @param buffer the buffer to read from.
+     * @return the chars.
+     */
+    private static char[] readChars(ByteBuffer buffer) {
+        char[] chars = new char[buffer.getShort() & 0xFFFF];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + chars.length * Character.BYTES);
+        return chars;
+    }
+
+    /**
+     * Reads a string written by {@link java.io.DataOutput#writeUTF}. Names written by
+     * the archive are ASCII, for which the modified UTF-8 encoding is plain ASCII.
+     *
+     * @param buffer the buffer to read from.
+     * @return the string.
+     */
+    private static String readUtf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param buffer the buffer to read from.
+     * @return the value.
+     */
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Gets the ASCII art grid.
+     *
+     * @return the grid of chars representing the ASCII art.
+     */
+    public CharGrid getChars() {
+        return chars;
+    }
+
+    /**
+     * Gets the charset the grid was matched against.
+     *
+     * @return the charset.
+     */
+    public char[] getCharset() {
+        return charset;
+    }
+
+    /**
+     * Gets the name of the rounding strategy the grid was matched with.
+     *
+     * @return the rounding strategy name.
+     */
+    public String getRoundStrategy() {
+        return roundStrategy;
+    }
+
+    /**
+     * Gets the resolution of the render, that is, the number of chars per row.
+     *
+     * @return the resolution.
+     */
+    public int getResolution() {
+        return chars.getWidth();
+    }
+
+    /**
+     * Gets the sub-image brightnesses.
+     *
+     * @return a 2D array of brightness values, or null if the archive does not store them.
+     */
+    public double[][] getBrightnesses() {
+        return brightnesses;
+    }
+
+    /**
+     * Gets the sub-image average colors.
+     *
+     * @return a 2D array of colors packed as 0xRRGGBB, or null if the archive does not store them.
+     */
+    public int[][] getColors() {
+        return colors;
+    }
+
+    /**
+     * Outputs the archived render.
+     *
+     * @param asciiOutput the output to write the render to.
+     */
+    public void replay(AsciiOutput asciiOutput) {
+        asciiOutput.describeRender(charset, roundStrategy, brightnesses);
+        asciiOutput.out(chars, null);
+    }
+
+    /**
+     * Warms the render cache of a session with the archived render, as if it was the
+     * previous run. The archive must come from the image of the session, which is checked
+     * by the shape of its grid only. Chars in which the current charset differs from the
+     * archived one are recorded as added or removed, and a different rounding strategy as
+     * changed, so the next render re-matches chars from the cached brightnesses.
+     *
+     * @param singleton the state of the session.
+     * @param paddedWidth the padded width of the session's image.
+     * @param paddedHeight the padded height of the session's image.
+     * @param currentCharset the charset currently used by the session.
+     * @param currentRoundStrategy the name of the rounding strategy currently used by the session.
+     * @return true if the cache was warmed, false if the archive stores no brightnesses or
+     *         colors, or its grid does not split the image.
+     */
+    public boolean warmCache(AsciiArtSingleton singleton, int paddedWidth, int paddedHeight,
+                             char[] currentCharset, String currentRoundStrategy) {
+        int resolution = getResolution();
+        if (brightnesses == null || colors == null || paddedWidth % resolution != 0
+                || chars.getHeight() != paddedHeight / (paddedWidth / resolution)) {
+            return false;
+        }
+        singleton.updateSingleton(chars, brightnesses, colors, resolution);
+        if (!roundStrategy.equals(currentRoundStrategy)) {
+            singleton.changeRoundStrategy();
+        }
+
+        HashSet<Character> archived = new HashSet<>();
+        for (char c : charset) {
+            archived.add(c);
+        }
+        for (char c : currentCharset) {
+            if (!archived.remove(c)) {
+                singleton.addToPrevCharset(c);
+            }
+        }
+        for (char c : archived) {
+            singleton.removeFromPrevCharset(c);
+        }
+        return true;
+    }
+
+    /**
+     * Replays an archive without the source image.
+     *
+     * @param args the archive file name, optionally followed by an output type
+     *             (as accepted by the output command; console by default).
+     */
+    public static void main(String[] args) {
+        try {
+            AsciiArtArchive archive = load(args[0]);
+            String outputType = args.length > 1 ? args[1] : "console";
+            archive.replay(new AsciiOutputFactory().buildAsciiOutput(outputType));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package ascii_art;
 
+import ascii_output.CharGrid;
+
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Singleton class that manages state for the ASCII art generation process.
@@ -12,17 +15,26 @@ import java.util.HashSet;
  */
 public class AsciiArtSingleton {
 
+    /** Source of session ids, one per state instance. */
+    private static final AtomicLong nextSessionId = new AtomicLong();
+
     /** Singleton instance of AsciiArtSingleton. */
     private static final AsciiArtSingleton instance = new AsciiArtSingleton();
 
+    /** Id of the render session this instance keeps the state of. */
+    private final long sessionId;
+
     /** Previous resolution used in ASCII art generation. */
     private int prevResolution;
 
     /** Brightness values of sub-images from the previous run. */
     private double[][] prevSubImagesBrightnesses;
 
+    /** Average colors (packed as 0xRRGGBB) of sub-images from the previous run. */
+    private int[][] prevSubImagesColors;
+
     /** The previously generated ASCII art image. */
-    private char[][] prevImage;
+    private CharGrid prevImage;
 
     /** Set of characters removed from the charset. */
     private HashSet<Character> removedCharsSet;
@@ -30,8 +42,12 @@ public class AsciiArtSingleton {
     /** Set of characters added to the charset. */
     private HashSet<Character> addedCharsSet;
 
+    /** Whether the rounding strategy changed since the previous run. */
+    private boolean roundStrategyChanged;
+
     /** Private constructor to enforce singleton pattern. */
     private AsciiArtSingleton() {
+        sessionId = nextSessionId.incrementAndGet();
         removedCharsSet = new HashSet<>();
         addedCharsSet = new HashSet<>();
     }
@@ -45,6 +61,26 @@ public class AsciiArtSingleton {
         return instance;
     }
 
+    /**
+     * Creates a state instance independent of the shared one, for renders that run
+     * concurrently with the shell's (each concurrent render needs its own instance).
+     *
+     * @return a new, empty state instance.
+     */
+    static AsciiArtSingleton newInstance() {
+        return new AsciiArtSingleton();
+    }
+
+    /**
+     * Gets the id of the render session this instance keeps the state of, which tags
+     * the session's profiling events.
+     *
+     * @return the session id.
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
     /**
      * Checks if the character set has remained unchanged.
      *
@@ -54,6 +90,22 @@ public class AsciiArtSingleton {
         return addedCharsSet.isEmpty() && removedCharsSet.isEmpty();
     }
 
+    /**
+     * Checks if the rounding strategy has remained unchanged.
+     *
+     * @return true if the rounding strategy is the same, false otherwise.
+     */
+    public boolean isSameRoundStrategy() {
+        return !roundStrategyChanged;
+    }
+
+    /**
+     * Records that the rounding strategy changed since the previous run.
+     */
+    public void changeRoundStrategy() {
+        roundStrategyChanged = true;
+    }
+
     /**
      * Removes a character from the charset of the previous run.
      * If the character was newly added, it removes it from the added set.
@@ -78,6 +130,17 @@ public class AsciiArtSingleton {
         }
     }
 
+    /**
+     * Records that the image changed since the previous run, so nothing of the previous
+     * run is reused. The charset and rounding strategy changes are kept.
+     */
+    public void changeImage() {
+        setPrevResolution(0);
+        setPrevSubImagesBrightnesses(null);
+        setPrevSubImagesColors(null);
+        setPrevImage(null);
+    }
+
     /**
      * Gets the resolution used in the previous ASCII art generation.
      *
@@ -114,12 +177,30 @@ public class AsciiArtSingleton {
         this.prevSubImagesBrightnesses = brightnesses;
     }
 
+    /**
+     * Gets the average colors of the sub-images from the previous run.
+     *
+     * @return a 2D array of colors packed as 0xRRGGBB.
+     */
+    public int[][] getPrevSubImagesColors() {
+        return prevSubImagesColors;
+    }
+
+    /**
+     * Sets the average colors of the sub-images for the next run.
+     *
+     * @param colors the new colors.
+     */
+    private void setPrevSubImagesColors(int[][] colors) {
+        this.prevSubImagesColors = colors;
+    }
+
     /**
      * Gets the previously generated ASCII art image.
      *
-     * @return a 2D character array representing the ASCII art.
+     * @return the grid of chars representing the ASCII art.
      */
-    public char[][] getPrevImage() {
+    public CharGrid getPrevImage() {
         return prevImage;
     }
 
@@ -128,7 +209,7 @@ public class AsciiArtSingleton {
      *
      * @param image the new ASCII art image.
      */
-    private void setPrevImage(char[][] image) {
+    private void setPrevImage(CharGrid image) {
         this.prevImage = image;
     }
 
@@ -144,13 +225,17 @@ public class AsciiArtSingleton {
      * Updates the singleton with the latest results, including the generated ASCII art
      * and brightness values of sub-images.
      *
-     * @param resultImage the generated ASCII art as a 2D character array.
+     * @param resultImage the generated ASCII art as a grid of chars.
      * @param subImageBrightnesses the brightness values of the sub-images.
+     * @param subImageColors the average colors of the sub-images.
      */
-    public void updateSingleton(char[][] resultImage, double[][] subImageBrightnesses, int resolution) {
+    public void updateSingleton(CharGrid resultImage, double[][] subImageBrightnesses,
+                                int[][] subImageColors, int resolution) {
         resetCharset(); // Reset the character set if needed
+        roundStrategyChanged = false; // The new result uses the current rounding strategy
         setPrevResolution(resolution); // Update the previous resolution
         setPrevSubImagesBrightnesses(subImageBrightnesses); // Store brightness values
+        setPrevSubImagesColors(subImageColors); // Store average colors
         setPrevImage(resultImage); // Cache the generated ASCII art
     }
 }
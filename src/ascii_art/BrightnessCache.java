@@ -0,0 +1,231 @@
+package ascii_art;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Logger;
+
+/**
+ * The BrightnessCache class keeps brightness grids on disk across runs, so rendering an
+ * image seen before needs neither its pixels nor its brightness calculation.
+ *
+ * <p>Every grid is a file keyed by the content hash of its image and its resolution, and
+ * holds the brightness and average color of every cell. The cache is capped in bytes: a
+ * grid's file is touched whenever it is read, and after every write the least recently used
+ * files are deleted until the cache fits its cap. Grids are written under a temporary name
+ * and then renamed, so readers never see a partly written grid. A cache that cannot be read
+ * or written never fails a render; it only misses.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class BrightnessCache {
+
+    /** First int of every grid file. */
+    private static final int GRID_MAGIC = 0x41534247;
+
+    /** Version of the grid file format. */
+    private static final int GRID_VERSION = 1;
+
+    /** Size of the grid file header: magic, version, rows and columns. */
+    private static final int GRID_HEADER_BYTES = 4 * Integer.BYTES;
+
+    /** Extension of grid files. */
+    private static final String GRID_EXTENSION = ".grid";
+
+    /**
+     * A brightness grid read from the cache.
+     */
+    public static final class Grid {
+
+        /** The brightness of every cell. */
+        private final double[][] brightnesses;
+
+        /** The average color of every cell, packed as 0xRRGGBB. */
+        private final int[][] colors;
+
+        /**
+         * Constructs a grid.
+         *
+         * @param brightnesses the brightness of every cell.
+         * @param colors the average color of every cell.
+         */
+        Grid(double[][] brightnesses, int[][] colors) {
+            this.brightnesses = brightnesses;
+            this.colors = colors;
+        }
+
+        /**
+         * Gets the brightness of every cell.
+         *
+         * @return the brightnesses.
+         */
+        public double[][] getBrightnesses() {
+            return brightnesses;
+        }
+
+        /**
+         * Gets the average color of every cell.
+         *
+         * @return the colors, packed as 0xRRGGBB.
+         */
+        public int[][] getColors() {
+            return colors;
+        }
+    }
+
+    /** The directory of the grid files. */
+    private final File directory;
+
+    /** The largest total size of the grid files, in bytes. */
+    private final long maxBytes;
+
+    /**
+     * Constructs a cache over a directory, which is created on the first write.
+     *
+     * @param directory the directory of the grid files.
+     * @param maxBytes the largest total size of the grid files, in bytes.
+     */
+    public BrightnessCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the file of a grid.
+     *
+     * @param imageHash the content hash of the image.
+     * @param resolution the resolution of the grid.
+     * @return the file.
+     */
+    private File gridFile(String imageHash, int resolution) {
+        return new File(directory, imageHash + "-" + resolution + GRID_EXTENSION);
+    }
+
+    /**
+     * Checks whether a grid is cached, without reading it.
+     *
+     * @param imageHash the content hash of the image.
+     * @param resolution the resolution of the grid.
+     * @return true if the grid is cached, false otherwise.
+     */
+    public boolean contains(String imageHash, int resolution) {
+        return gridFile(imageHash, resolution).isFile();
+    }
+
+    /**
+     * Reads a grid, marking it as recently used.
+     *
+     * @param imageHash the content hash of the image.
+     * @param resolution the resolution of the grid.
+     * @return the grid, or null if it is not cached or cannot be read.
+     */
+    public Grid load(String imageHash, int resolution) {
+        File file = gridFile(imageHash, resolution);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // Read the whole file
+            }
+            bytes.flip();
+            if (bytes.remaining() < GRID_HEADER_BYTES || bytes.getInt() != GRID_MAGIC
+                    || bytes.getInt() != GRID_VERSION) {
+                return null;
+            }
+            int rows = bytes.getInt();
+            int columns = bytes.getInt();
+            if (bytes.remaining() != (long) rows * columns * (Double.BYTES + Integer.BYTES)) {
+                return null;
+            }
+            double[][] brightnesses = new double[rows][columns];
+            DoubleBuffer brightnessBuffer = bytes.asDoubleBuffer();
+            for (double[] row : brightnesses) {
+                brightnessBuffer.get(row);
+            }
+            bytes.position(bytes.position() + rows * columns * Double.BYTES);
+            int[][] colors = new int[rows][columns];
+            IntBuffer colorBuffer = bytes.asIntBuffer();
+            for (int[] row : colors) {
+                colorBuffer.get(row);
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return new Grid(brightnesses, colors);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a grid, then evicts the least recently used grids beyond the cap.
+     *
+     * @param imageHash the content hash of the image.
+     * @param resolution the resolution of the grid.
+     * @param brightnesses the brightness of every cell.
+     * @param colors the average color of every cell, packed as 0xRRGGBB.
+     */
+    public void store(String imageHash, int resolution, double[][] brightnesses, int[][] colors) {
+        int rows = brightnesses.length;
+        int columns = brightnesses[0].length;
+        ByteBuffer bytes = ByteBuffer.allocate(GRID_HEADER_BYTES + rows * columns * (Double.BYTES + Integer.BYTES));
+        bytes.putInt(GRID_MAGIC).putInt(GRID_VERSION).putInt(rows).putInt(columns);
+        for (double[] row : brightnesses) {
+            for (double brightness : row) {
+                bytes.putDouble(brightness);
+            }
+        }
+        for (int[] row : colors) {
+            for (int color : row) {
+                bytes.putInt(color);
+            }
+        }
+        bytes.flip();
+
+        File tempFile = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            tempFile = File.createTempFile("grid", ".tmp", directory);
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+            Files.move(tempFile.toPath(), gridFile(imageHash, resolution).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            Logger.getGlobal().warning(String.format("Failed to cache brightness in \"%s\"", directory));
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used grids until the cache fits its cap.
+     */
+    private void evict() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(GRID_EXTENSION));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+            if (totalBytes > maxBytes) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ascii_art;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The FileWatcher class waits for changes of a single file, through a {@link WatchService}
+ * on its directory.
+ *
+ * <p>Saving a file often takes several writes, or a write to a temporary file and a rename,
+ * each reported as its own event. Changes are therefore debounced: a change is only reported
+ * once its directory stayed quiet for a while, so a burst of events is reported once and the
+ * file is not read half written.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class FileWatcher implements AutoCloseable {
+
+    /** The watched file, as an absolute path. */
+    private final Path file;
+
+    /** The service watching the directory of the file. */
+    private final WatchService watchService;
+
+    /**
+     * Starts watching a file.
+     *
+     * @param file the file to watch.
+     * @throws IOException if the directory of the file cannot be watched.
+     */
+    public FileWatcher(Path file) throws IOException {
+        this.file = file.toAbsolutePath().normalize();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        try {
+            this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until the file changes and its directory then stays quiet for the debounce
+     * delay.
+     *
+     * @param debounceMillis the quiet time that ends a burst of changes, in milliseconds.
+     * @return true if the file changed, false if the watcher was closed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitChange(long debounceMillis) throws InterruptedException {
+        try {
+            boolean changed = false;
+            while (!changed) {
+                changed = drainEvents(watchService.take());
+            }
+            WatchKey key;
+            while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                drainEvents(key);
+            }
+            return true;
+        } catch (ClosedWatchServiceException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes the pending events of a key and re-arms it.
+     *
+     * @param key the key of the watched directory.
+     * @return true if any of the events may concern the file, false otherwise.
+     */
+    private boolean drainEvents(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // Lost events (overflow) may have concerned the file
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Stops watching; a thread waiting for a change then returns.
+     */
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+            // Nothing was written, so nothing is lost
+        }
+    }
+}
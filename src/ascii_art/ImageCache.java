@@ -0,0 +1,322 @@
+package ascii_art;
+
+import constants.Constants;
+import image.BandedImage;
+import image.ContentHash;
+import image.Image;
+import image.ImageEditor;
+import image.OffHeapImage;
+import image.RowSourceImage;
+import render_events.ImageLoadEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ImageCache class keeps the images of a shell session prepared, so switching back to
+ * an image renders it without decoding it or calculating its brightness again.
+ *
+ * <p>Every entry holds an image file's content hash, its decoded and padded pixels (or
+ * the source of its rows, for images read in bands or kept off the heap) and the brightness
+ * grids already calculated for it, by resolution. Entries are keyed by the file's path, size
+ * and modification time, so an image that changed on disk is loaded again.</p>
+ *
+ * <p>The cache is bounded by the estimated bytes of its entries, on the heap or off it, which
+ * grow as their images are decoded and their grids calculated. Every entry is held by the sessions it was
+ * got for until they release it. Whenever the cache is trimmed, the least recently used
+ * entries are dropped until it fits, but entries still held (the images being rendered)
+ * are always kept, so the memory of an image is never released while a session uses it.</p>
+ *
+ * <p>The cache may be shared by the concurrent sessions of a {@link ShellDaemon}: its
+ * methods are synchronized, every entry decodes its image once whichever session needs it
+ * first, and its grids may be read and added to by several sessions at once.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class ImageCache implements AutoCloseable {
+
+    /** Estimated heap bytes of a pixel of a padded image held in memory. */
+    static final long HELD_BYTES_PER_PIXEL = 32;
+
+    /** Bytes of a pixel of an image kept off the heap. */
+    private static final long OFF_HEAP_BYTES_PER_PIXEL = Integer.BYTES;
+
+    /** Estimated heap bytes of a cell of a brightness grid. */
+    private static final long GRID_BYTES_PER_CELL = Double.BYTES + Integer.BYTES;
+
+    /**
+     * A prepared image of the cache.
+     */
+    public static final class Entry {
+
+        /** The name of the image file. */
+        private final String imageName;
+
+        /** The content hash of the image file. */
+        private final String imageHash;
+
+        /** The image whose rows are read on every render, or null if it is held in memory. */
+        private final RowSourceImage rowSourceImage;
+
+        /** The width of the padded image, in pixels. */
+        private final int paddedWidth;
+
+        /** The height of the padded image, in pixels. */
+        private final int paddedHeight;
+
+        /** The brightness grids calculated for the image, by resolution. */
+        private final Map<Integer, BrightnessCache.Grid> grids;
+
+        /** The padded image, or null if it is not decoded yet or its rows are read instead. */
+        private volatile Image image;
+
+        /** The number of sessions holding the entry, guarded by the cache. */
+        private int holders;
+
+        /**
+         * Constructs an entry.
+         *
+         * @param imageName the name of the image file.
+         * @param imageHash the content hash of the image file.
+         * @param rowSourceImage the image whose rows are read on every render, or null.
+         * @param header the image, for its padded dimensions.
+         */
+        private Entry(String imageName, String imageHash, RowSourceImage rowSourceImage,
+                      RowSourceImage header) {
+            this.imageName = imageName;
+            this.imageHash = imageHash;
+            this.rowSourceImage = rowSourceImage;
+            this.paddedWidth = header.getPaddedWidth();
+            this.paddedHeight = header.getPaddedHeight();
+            this.grids = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Gets the name of the image file.
+         *
+         * @return the image name.
+         */
+        public String getImageName() {
+            return imageName;
+        }
+
+        /**
+         * Gets the content hash of the image file.
+         *
+         * @return the content hash.
+         */
+        public String getImageHash() {
+            return imageHash;
+        }
+
+        /**
+         * Gets the image whose rows are read on every render.
+         *
+         * @return the image, or null if it is held in memory.
+         */
+        public RowSourceImage getRowSourceImage() {
+            return rowSourceImage;
+        }
+
+        /**
+         * Gets the width of the padded image.
+         *
+         * @return the width of the padded image in pixels.
+         */
+        public int getPaddedWidth() {
+            return paddedWidth;
+        }
+
+        /**
+         * Gets the height of the padded image.
+         *
+         * @return the height of the padded image in pixels.
+         */
+        public int getPaddedHeight() {
+            return paddedHeight;
+        }
+
+        /**
+         * Gets the brightness grids calculated for the image, by resolution, to be read and
+         * added to by renders.
+         *
+         * @return the grids.
+         */
+        public Map<Integer, BrightnessCache.Grid> getGrids() {
+            return grids;
+        }
+
+        /**
+         * Decodes and pads the image the first time a render needs its pixels.
+         *
+         * @param sessionId the render session the image is loaded for.
+         * @return the padded image.
+         * @throws UncheckedIOException if the image cannot be read.
+         */
+        public synchronized Image loadImage(long sessionId) {
+            if (image == null) {
+                ImageLoadEvent event = new ImageLoadEvent();
+                event.begin();
+                RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.IMAGE_DECODE);
+                Image decodedImage;
+                try {
+                    decodedImage = new Image(imageName);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                RenderMetrics.end(measurement);
+
+                measurement = RenderMetrics.begin(RenderMetrics.Stage.PAD_IMAGE);
+                image = ImageEditor.padImage(decodedImage);
+                RenderMetrics.end(measurement);
+                event.finish(sessionId, imageName, false, image.getWidth(), image.getHeight(),
+                        new File(imageName).length());
+            }
+            return image;
+        }
+
+        /**
+         * Estimates the bytes the entry holds, on the heap or off it.
+         *
+         * @return the estimated bytes.
+         */
+        private long getWeight() {
+            long pixels = (long) paddedWidth * paddedHeight;
+            long weight = 0;
+            if (image != null) {
+                weight = pixels * HELD_BYTES_PER_PIXEL;
+            } else if (rowSourceImage instanceof OffHeapImage) {
+                weight = pixels * OFF_HEAP_BYTES_PER_PIXEL;
+            }
+            for (BrightnessCache.Grid grid : grids.values()) {
+                weight += (long) grid.getBrightnesses().length * grid.getBrightnesses()[0].length
+                        * GRID_BYTES_PER_CELL;
+            }
+            return weight;
+        }
+
+        /**
+         * Releases the off-heap memory of the image, if it has any.
+         */
+        private void close() {
+            if (rowSourceImage instanceof OffHeapImage) {
+                ((OffHeapImage) rowSourceImage).close();
+            }
+        }
+    }
+
+    /** The entries, by file path, size and modification time, from least to most recently used. */
+    private final LinkedHashMap<List<Object>, Entry> entries;
+
+    /** The largest estimated bytes of the entries. */
+    private final long maxBytes;
+
+    /** Whether images are decoded into off-heap memory rather than onto the heap. */
+    private final boolean offHeapImages;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxBytes the largest estimated bytes of the entries, on the heap or off it.
+     * @param offHeapImages true to keep decoded images off the heap, false otherwise.
+     */
+    public ImageCache(long maxBytes, boolean offHeapImages) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxBytes = maxBytes;
+        this.offHeapImages = offHeapImages;
+    }
+
+    /**
+     * Gets the entry of an image file, preparing it if the file is not cached or changed
+     * since it was, and marks it as the most recently used. Off-heap images are decoded into
+     * (or mapped from) a cached raw pixel file. Otherwise, images whose padded pixels would
+     * not fit in a fraction of the heap are read in bands on every brightness calculation,
+     * and other images are only decoded once a render needs their pixels. The entry is held
+     * for the session until it is released.
+     *
+     * @param imageName the name of the image file.
+     * @param sessionId the render session the image is loaded for.
+     * @return the entry.
+     * @throws IOException if the image cannot be read.
+     */
+    public synchronized Entry get(String imageName, long sessionId) throws IOException {
+        File file = new File(imageName);
+        List<Object> key = List.of(file.getCanonicalPath(), file.length(), file.lastModified());
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.holders++;
+            return entry;
+        }
+
+        String imageHash = ContentHash.of(file);
+        ImageLoadEvent event = new ImageLoadEvent();
+        event.begin();
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.IMAGE_DECODE);
+        RowSourceImage header = offHeapImages
+                ? OffHeapImage.open(imageName, imageHash, new File(Constants.PIXEL_CACHE_DIRECTORY))
+                : new BandedImage(imageName);
+        long paddedPixels = (long) header.getPaddedWidth() * header.getPaddedHeight();
+        if (offHeapImages || paddedPixels * Constants.IN_MEMORY_BYTES_PER_PIXEL
+                > Runtime.getRuntime().maxMemory() * Constants.IN_MEMORY_HEAP_FRACTION) {
+            entry = new Entry(imageName, imageHash, header, header);
+            RenderMetrics.end(measurement);
+            event.finish(sessionId, imageName, false, header.getPaddedWidth(), header.getPaddedHeight(),
+                    file.length());
+        } else {
+            // Decoded by loadImage, once a render needs the pixels
+            entry = new Entry(imageName, imageHash, null, header);
+        }
+        entry.holders++;
+        entries.put(key, entry);
+        trim();
+        return entry;
+    }
+
+    /**
+     * Releases an entry a session got, which may then be dropped when the cache is trimmed.
+     *
+     * @param entry the entry.
+     */
+    public synchronized void release(Entry entry) {
+        entry.holders--;
+    }
+
+    /**
+     * Drops the least recently used entries until the cache fits its bound, keeping the
+     * entries still held, and releases the off-heap memory of the dropped ones.
+     */
+    public synchronized void trim() {
+        long totalBytes = 0;
+        for (Entry entry : entries.values()) {
+            totalBytes += entry.getWeight();
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.holders > 0) {
+                continue;
+            }
+            totalBytes -= entry.getWeight();
+            entry.close();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Drops all entries, releasing the off-heap memory of their images. The cache must no
+     * longer be used by any session.
+     */
+    @Override
+    public synchronized void close() {
+        for (Entry entry : entries.values()) {
+            entry.close();
+        }
+        entries.clear();
+    }
+}
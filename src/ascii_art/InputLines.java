@@ -0,0 +1,124 @@
+package ascii_art;
+
+import constants.Constants;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * The InputLines class reads the lines the user enters on a background thread, so that
+ * the shell can notice a line asking to cancel a render while the render runs.
+ *
+ * <p>Lines are queued in the order they are entered. A cancel line is taken out of the
+ * queue by the render it cancels; the other lines wait for the shell to take them.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+class InputLines {
+
+    /** Marker queued after the last line, once the input ends (compared by reference). */
+    private static final String END_OF_INPUT = new String();
+
+    /** The lines entered and not taken yet. */
+    private final BlockingQueue<String> lines;
+
+    /** Supplies the next trimmed line, throwing NoSuchElementException once the input ended. */
+    private final Supplier<String> source;
+
+    /**
+     * Starts reading the lines the user enters on the keyboard.
+     */
+    InputLines() {
+        this(KeyboardInput::readLine);
+    }
+
+    /**
+     * Starts reading the lines of a reader, such as the connection of a remote session.
+     *
+     * @param reader the reader of the lines.
+     */
+    InputLines(BufferedReader reader) {
+        this(() -> readLine(reader));
+    }
+
+    /**
+     * Starts reading lines.
+     *
+     * @param source supplies the next trimmed line.
+     */
+    private InputLines(Supplier<String> source) {
+        this.lines = new LinkedBlockingQueue<>();
+        this.source = source;
+        Thread reader = new Thread(this::readLines, Constants.INPUT_THREAD_NAME);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Reads lines into the queue until the input ends.
+     */
+    private void readLines() {
+        try {
+            while (true) {
+                lines.add(source.get());
+            }
+        } catch (NoSuchElementException | IllegalStateException e) {
+            lines.add(END_OF_INPUT);
+        }
+    }
+
+    /**
+     * Reads the next line of a reader.
+     *
+     * @param reader the reader.
+     * @return the trimmed line.
+     * @throws NoSuchElementException if the input ended or cannot be read.
+     */
+    private static String readLine(BufferedReader reader) {
+        String line;
+        try {
+            line = reader.readLine();
+        } catch (IOException e) {
+            throw new NoSuchElementException();
+        }
+        if (line == null) {
+            throw new NoSuchElementException();
+        }
+        return line.trim();
+    }
+
+    /**
+     * Takes the next line, waiting until the user enters one.
+     *
+     * @return the trimmed line.
+     * @throws NoSuchElementException if the input ended (or the wait was interrupted).
+     */
+    String take() {
+        String line;
+        try {
+            line = lines.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NoSuchElementException();
+        }
+        if (line == END_OF_INPUT) {
+            // Keep the marker for later calls
+            lines.add(END_OF_INPUT);
+            throw new NoSuchElementException();
+        }
+        return line;
+    }
+
+    /**
+     * Takes the first cancel line entered and not taken yet, if there is one.
+     *
+     * @return true if a cancel line was taken, false otherwise.
+     */
+    boolean takeCancel() {
+        return lines.remove(Constants.CANCEL_INPUT);
+    }
+}
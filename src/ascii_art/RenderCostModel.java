@@ -0,0 +1,63 @@
+package ascii_art;
+
+import constants.Constants;
+
+/**
+ * The RenderCostModel class estimates how long a render will take, from the timings of
+ * the renders before it.
+ *
+ * <p>A render costs time per pixel of the padded image when it calculates a brightness
+ * grid (padding, splitting and summing every pixel, or reading every row), and time per
+ * sub-image when it matches chars. Both rates are recorded on every render, whether or
+ * not {@link RenderMetrics} is recording, as moving averages that favor recent renders,
+ * and start from conservative defaults before the first render.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class RenderCostModel {
+
+    /** Weight of the latest render in the moving averages. */
+    private static final double LATEST_WEIGHT = 0.5;
+
+    /** Average time to calculate the brightness grid, per padded pixel, in nanoseconds. */
+    private static double nanosPerPixel = Constants.DEFAULT_NANOS_PER_PIXEL;
+
+    /** Average time to match chars, per sub-image, in nanoseconds. */
+    private static double nanosPerSubImage = Constants.DEFAULT_NANOS_PER_SUB_IMAGE;
+
+    /** Private constructor, since the class only has static members. */
+    private RenderCostModel() {
+    }
+
+    /**
+     * Records the time a brightness grid calculation took.
+     *
+     * @param pixels the number of padded pixels of the image.
+     * @param nanos the time it took, in nanoseconds.
+     */
+    public static synchronized void recordGrid(long pixels, long nanos) {
+        nanosPerPixel += LATEST_WEIGHT * ((double) nanos / pixels - nanosPerPixel);
+    }
+
+    /**
+     * Records the time matching chars took.
+     *
+     * @param subImages the number of sub-images.
+     * @param nanos the time it took, in nanoseconds.
+     */
+    public static synchronized void recordMatching(long subImages, long nanos) {
+        nanosPerSubImage += LATEST_WEIGHT * ((double) nanos / subImages - nanosPerSubImage);
+    }
+
+    /**
+     * Estimates the time a render will take.
+     *
+     * @param pixels the number of padded pixels of the image.
+     * @param subImages the number of sub-images at the resolution of the render.
+     * @param gridCached whether the brightness grid at that resolution is cached.
+     * @return the estimated time, in nanoseconds.
+     */
+    public static synchronized double estimateNanos(long pixels, long subImages, boolean gridCached) {
+        return (gridCached ? 0 : pixels * nanosPerPixel) + subImages * nanosPerSubImage;
+    }
+}
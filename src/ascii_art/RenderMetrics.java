@@ -0,0 +1,277 @@
+package ascii_art;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The RenderMetrics class records, for every stage of the render pipeline, how many times
+ * it ran, its total wall time, the bytes it allocated and its cache hits and misses.
+ *
+ * <p>Recording is off by default. While it is off, {@link #begin} returns null without
+ * reading any clock, so instrumented code pays a single flag check per stage.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class RenderMetrics {
+
+    /**
+     * The instrumented stages of the render pipeline.
+     */
+    public enum Stage {
+        /** Decoding the image file into an {@link image.Image}. */
+        IMAGE_DECODE("imageDecode"),
+        /** Padding the image to power-of-two dimensions. */
+        PAD_IMAGE("padImage"),
+        /** Splitting the padded image into sub-images. */
+        SUB_IMAGES("subImages"),
+        /** Calculating the brightness of every sub-image. */
+        BRIGHTNESS("brightness"),
+        /** Matching every brightness to a char. */
+        MATCHING("matching"),
+        /** Writing the result to the current output. */
+        OUTPUT("output");
+
+        /** The name the stage is reported under. */
+        private final String reportName;
+
+        /**
+         * Constructs a stage.
+         *
+         * @param reportName the name the stage is reported under.
+         */
+        Stage(String reportName) {
+            this.reportName = reportName;
+        }
+    }
+
+    /**
+     * The start of a stage run, as returned by {@link #begin}.
+     */
+    public static final class Measurement {
+
+        /** The measured stage. */
+        private final Stage stage;
+
+        /** The wall time at the start, in nanoseconds. */
+        private final long startNanos;
+
+        /** The bytes allocated by the current thread at the start. */
+        private final long startBytes;
+
+        /**
+         * Constructs a measurement starting now.
+         *
+         * @param stage the measured stage.
+         */
+        private Measurement(Stage stage) {
+            this.stage = stage;
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+    }
+
+    /** Number of stages. */
+    private static final int STAGE_COUNT = Stage.values().length;
+
+    /** The thread bean allocations are read from, or null if the JVM cannot report them. */
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = allocationBean();
+
+    /** Whether recording is on. */
+    private static volatile boolean enabled;
+
+    /** Number of runs of every stage. */
+    private static final LongAdder[] calls = newAdders();
+
+    /** Total wall time of every stage, in nanoseconds. */
+    private static final LongAdder[] nanos = newAdders();
+
+    /** Total bytes allocated by every stage. */
+    private static final LongAdder[] allocatedBytes = newAdders();
+
+    /** Cache hits of every stage. */
+    private static final LongAdder[] hits = newAdders();
+
+    /** Cache misses of every stage. */
+    private static final LongAdder[] misses = newAdders();
+
+    /** Private constructor, since the class only has static members. */
+    private RenderMetrics() {
+    }
+
+    /**
+     * Creates one counter per stage.
+     *
+     * @return the counters, indexed by stage ordinal.
+     */
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[STAGE_COUNT];
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Gets the thread bean allocations are read from, enabling allocation measurement.
+     *
+     * @return the bean, or null if the JVM cannot report per-thread allocations.
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        bean.setThreadAllocatedMemoryEnabled(true);
+        return bean;
+    }
+
+    /**
+     * Gets the bytes allocated so far by the current thread.
+     *
+     * @return the allocated bytes, or 0 if the JVM cannot report them.
+     */
+    private static long allocatedBytes() {
+        return THREAD_BEAN == null ? 0 : THREAD_BEAN.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Checks if recording is on.
+     *
+     * @return true if recording is on, false otherwise.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off. Recorded numbers are kept either way.
+     *
+     * @param enabled true to turn recording on, false to turn it off.
+     */
+    public static void setEnabled(boolean enabled) {
+        RenderMetrics.enabled = enabled;
+    }
+
+    /**
+     * Clears all recorded numbers.
+     */
+    public static void reset() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            calls[i].reset();
+            nanos[i].reset();
+            allocatedBytes[i].reset();
+            hits[i].reset();
+            misses[i].reset();
+        }
+    }
+
+    /**
+     * Starts measuring a run of a stage on the current thread.
+     *
+     * @param stage the stage.
+     * @return the measurement to pass to {@link #end}, or null if recording is off.
+     */
+    public static Measurement begin(Stage stage) {
+        return enabled ? new Measurement(stage) : null;
+    }
+
+    /**
+     * Ends a measurement started on the current thread and records it.
+     *
+     * @param measurement the measurement returned by {@link #begin}, possibly null.
+     */
+    public static void end(Measurement measurement) {
+        if (measurement == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - measurement.startNanos;
+        int index = measurement.stage.ordinal();
+        calls[index].increment();
+        nanos[index].add(elapsed);
+        allocatedBytes[index].add(allocatedBytes() - measurement.startBytes);
+    }
+
+    /**
+     * Records a cache hit of a stage, which then did not need to run.
+     *
+     * @param stage the stage.
+     */
+    public static void hit(Stage stage) {
+        if (enabled) {
+            hits[stage.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Records a cache miss of a stage, which then needed to run.
+     *
+     * @param stage the stage.
+     */
+    public static void miss(Stage stage) {
+        if (enabled) {
+            misses[stage.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Gets the number of cache hits recorded for a stage.
+     *
+     * @param stage the stage.
+     * @return the number of hits.
+     */
+    public static long getHits(Stage stage) {
+        return hits[stage.ordinal()].sum();
+    }
+
+    /**
+     * Gets the number of cache misses recorded for a stage.
+     *
+     * @param stage the stage.
+     * @return the number of misses.
+     */
+    public static long getMisses(Stage stage) {
+        return misses[stage.ordinal()].sum();
+    }
+
+    /**
+     * Formats the recorded numbers as a table, one line per stage.
+     *
+     * @return the table.
+     */
+    public static String toTable() {
+        StringBuilder table = new StringBuilder(String.format("%-12s %8s %12s %10s %12s %8s %8s%n",
+                "stage", "calls", "total ms", "avg ms", "alloc KB", "hits", "misses"));
+        for (Stage stage : Stage.values()) {
+            int i = stage.ordinal();
+            long stageCalls = calls[i].sum();
+            double totalMillis = nanos[i].sum() / 1e6;
+            table.append(String.format("%-12s %8d %12.3f %10.3f %12d %8d %8d%n", stage.reportName,
+                    stageCalls, totalMillis, stageCalls == 0 ? 0 : totalMillis / stageCalls,
+                    allocatedBytes[i].sum() / 1024, hits[i].sum(), misses[i].sum()));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Formats the recorded numbers as a JSON object, keyed by stage name.
+     *
+     * @return the JSON object.
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        for (Stage stage : Stage.values()) {
+            int i = stage.ordinal();
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(String.format("\"%s\":{\"calls\":%d,\"nanos\":%d,\"allocatedBytes\":%d,"
+                            + "\"hits\":%d,\"misses\":%d}", stage.reportName, calls[i].sum(),
+                    nanos[i].sum(), allocatedBytes[i].sum(), hits[i].sum(), misses[i].sum()));
+        }
+        return json.append('}').toString();
+    }
+}
@@ -0,0 +1,440 @@
+package ascii_art;
+
+import ascii_output.CharGrid;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import constants.Constants;
+import image.ContentHash;
+import image.Image;
+import image.ImageEditor;
+import image_char_matching.SubImgCharMatcher;
+import render_events.ImageLoadEvent;
+import render_events.MatcherRebuildEvent;
+import render_events.OutputWriteEvent;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The RenderServer class serves ASCII art renders over HTTP on the local machine, using the
+ * JDK's built-in HTTP server.
+ *
+ * <p>A render is requested with a POST to /render whose body is an image file. The query
+ * string may set the resolution ("res"), the charset as a list of chars ("chars"), the
+ * rounding strategy ("round") and the output type ("output": console, html or htmlColor).
+ * The response is the console text or the HTML document.</p>
+ *
+ * <p>Every request is handled on its own virtual thread when the JVM supports them, and on
+ * a pooled platform thread otherwise. The number of renders in flight is bounded, and requests
+ * beyond the bound are rejected, as are image files beyond a size. Decoded images (keyed by a
+ * hash of their content) and matchers (keyed by charset and rounding strategy) are cached
+ * across requests, images within the share of the heap a shell's {@link ImageCache} takes,
+ * while every render keeps its own state, so concurrent renders never share the shell's
+ * {@link AsciiArtSingleton}.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class RenderServer {
+
+    /** Path of the render endpoint. */
+    private static final String RENDER_PATH = "/render";
+
+    /** Maximal number of renders in flight at once. */
+    private static final int MAX_IN_FLIGHT = 16;
+
+    /** Maximal number of matchers kept in the cache. */
+    private static final int MAX_CACHED_MATCHERS = 32;
+
+    /** The underlying HTTP server. */
+    private final HttpServer server;
+
+    /** The executor requests are handled on. */
+    private final ExecutorService executor;
+
+    /** Permits for renders in flight. */
+    private final Semaphore inFlight;
+
+    /**
+     * Decoded and padded images, keyed by a hash of the image file content, from least to
+     * most recently used, guarded by itself.
+     */
+    private final LinkedHashMap<String, Image> images;
+
+    /** The largest estimated heap bytes of the cached images. */
+    private final long maxImageBytes;
+
+    /** The estimated heap bytes of the cached images, guarded by the images. */
+    private long imageBytes;
+
+    /** Matchers, keyed by charset and rounding strategy. */
+    private final Map<String, SubImgCharMatcher> matchers;
+
+    /**
+     * Constructs a server bound to the loopback interface, without starting it.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @throws IOException if the server cannot be bound.
+     */
+    public RenderServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = newRequestExecutor();
+        this.inFlight = new Semaphore(MAX_IN_FLIGHT);
+        this.images = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxImageBytes = (long) (Runtime.getRuntime().maxMemory() * Constants.IMAGE_CACHE_HEAP_FRACTION);
+        this.matchers = lruCache(MAX_CACHED_MATCHERS);
+        server.createContext(RENDER_PATH, this::handleRender);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Creates the executor requests are handled on: one virtual thread per request when
+     * the JVM supports them, or a pool of platform threads otherwise. {@link ShellDaemon}
+     * runs its sessions on one too.
+     *
+     * @return the executor.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Creates a thread-safe map evicting its least recently used entry beyond a size.
+     *
+     * @param maxSize the maximal number of entries.
+     * @param <V> the type of the values.
+     * @return the map.
+     */
+    private static <V> Map<String, V> lruCache(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving requests.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles a request to the render endpoint.
+     *
+     * @param exchange the request and its response.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handleRender(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendText(exchange, 405, Constants.SERVER_POST_ONLY);
+                return;
+            }
+            if (!inFlight.tryAcquire()) {
+                sendText(exchange, 503, Constants.SERVER_BUSY);
+                return;
+            }
+            try {
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                byte[] body = exchange.getRequestBody().readNBytes(Constants.SERVER_MAX_BODY_BYTES + 1);
+                if (body.length > Constants.SERVER_MAX_BODY_BYTES) {
+                    sendText(exchange, 413, Constants.SERVER_TOO_LARGE);
+                    return;
+                }
+                String output = params.getOrDefault("output", "console");
+                String response = render(body, params, output);
+                exchange.getResponseHeaders().set("Content-Type",
+                        (output.equals("console") ? "text/plain" : "text/html") + "; charset=UTF-8");
+                byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream stream = exchange.getResponseBody()) {
+                    stream.write(bytes);
+                }
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage());
+            } finally {
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * Renders an image according to the request parameters.
+     *
+     * @param body the image file content.
+     * @param params the request parameters.
+     * @param output the output type.
+     * @return the rendered console text or HTML document.
+     * @throws IOException if writing the render fails.
+     * @throws IllegalArgumentException if the image or a parameter is invalid.
+     */
+    private String render(byte[] body, Map<String, String> params, String output) throws IOException {
+        AsciiArtSingleton state = AsciiArtSingleton.newInstance();
+        Image image = getImage(body, state.getSessionId());
+        int resolution = parseResolution(params.get("res"), image);
+        SubImgCharMatcher matcher = getMatcher(params.getOrDefault("chars", ""),
+                params.getOrDefault("round", Constants.DEFAULT_ROUND_STRATEGY), state.getSessionId());
+
+        CharGrid chars = new AsciiArtAlgorithm(image, resolution, matcher, state).run();
+
+        Writer writer = new StringWriter();
+        OutputWriteEvent event = new OutputWriteEvent();
+        event.begin();
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.OUTPUT);
+        switch (output) {
+            case "console":
+                new ConsoleAsciiOutput().writeTo(chars, writer);
+                break;
+            case "html":
+                new HtmlAsciiOutput(Constants.OUTPUT_FILE_NAME, Constants.HTML_FONT)
+                        .writeTo(chars, null, writer);
+                break;
+            case "htmlColor":
+                new HtmlAsciiOutput(Constants.OUTPUT_FILE_NAME, Constants.HTML_FONT, false, true)
+                        .writeTo(chars, state.getPrevSubImagesColors(), writer);
+                break;
+            default:
+                throw new IllegalArgumentException(Constants.incorrectFormatMessage(Constants.OUTPUT_COMMAND));
+        }
+        RenderMetrics.end(measurement);
+        event.finish(state.getSessionId(), output, chars.getWidth() * chars.getHeight());
+        return writer.toString();
+    }
+
+    /**
+     * Gets the decoded and padded image of an image file, decoding it on a cache miss.
+     *
+     * @param body the image file content.
+     * @param sessionId the render session the image is loaded for.
+     * @return the padded image.
+     * @throws IllegalArgumentException if the content is not a readable image.
+     */
+    private Image getImage(byte[] body, long sessionId) {
+        ImageLoadEvent event = new ImageLoadEvent();
+        event.begin();
+        String key = ContentHash.of(body);
+        Image image;
+        synchronized (images) {
+            image = images.get(key);
+        }
+        if (image != null) {
+            RenderMetrics.hit(RenderMetrics.Stage.IMAGE_DECODE);
+            event.finish(sessionId, key, true, image.getWidth(), image.getHeight(), body.length);
+            return image;
+        }
+        RenderMetrics.miss(RenderMetrics.Stage.IMAGE_DECODE);
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.IMAGE_DECODE);
+        BufferedImage decoded;
+        try {
+            decoded = ImageIO.read(new ByteArrayInputStream(body));
+        } catch (IOException e) {
+            decoded = null;
+        }
+        if (decoded == null) {
+            throw new IllegalArgumentException(Constants.INVALID_IMAGE_PATH);
+        }
+        image = new Image(decoded);
+        RenderMetrics.end(measurement);
+
+        measurement = RenderMetrics.begin(RenderMetrics.Stage.PAD_IMAGE);
+        image = ImageEditor.padImage(image);
+        RenderMetrics.end(measurement);
+        cacheImage(key, image);
+        event.finish(sessionId, key, false, image.getWidth(), image.getHeight(), body.length);
+        return image;
+    }
+
+    /**
+     * Adds an image to the cache, then drops the least recently used images until the
+     * cache fits its bound. An image heavier than the whole bound is not cached.
+     *
+     * @param key the hash of the image file content.
+     * @param image the padded image.
+     */
+    private void cacheImage(String key, Image image) {
+        long weight = (long) image.getWidth() * image.getHeight() * ImageCache.HELD_BYTES_PER_PIXEL;
+        if (weight > maxImageBytes) {
+            return;
+        }
+        synchronized (images) {
+            Image replaced = images.put(key, image);
+            if (replaced != null) {
+                imageBytes -= (long) replaced.getWidth() * replaced.getHeight() * ImageCache.HELD_BYTES_PER_PIXEL;
+            }
+            imageBytes += weight;
+            Iterator<Image> iterator = images.values().iterator();
+            while (imageBytes > maxImageBytes) {
+                Image evicted = iterator.next();
+                imageBytes -= (long) evicted.getWidth() * evicted.getHeight() * ImageCache.HELD_BYTES_PER_PIXEL;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the matcher of a charset and rounding strategy, building it on a cache miss.
+     * Matchers are only read by renders once built, so they are shared between requests.
+     *
+     * @param charsArg the chars of the charset, or an empty string for the default charset.
+     * @param round the rounding strategy name.
+     * @param sessionId the render session the matcher is requested for.
+     * @return the matcher.
+     * @throws IllegalArgumentException if the charset or rounding strategy is invalid.
+     */
+    private SubImgCharMatcher getMatcher(String charsArg, String round, long sessionId) {
+        TreeSet<Character> charset = new TreeSet<>();
+        if (charsArg.isEmpty()) {
+            charset.addAll(Constants.DEFAULT_CHARSET);
+        }
+        for (char c : charsArg.toCharArray()) {
+            if (c < Constants.MIN_ASCII_VAL || c > Constants.MAX_ASCII_VAL) {
+                throw new IllegalArgumentException(Constants.incorrectFormatMessage(Constants.ADD_INPUT.strip()));
+            }
+            charset.add(c);
+        }
+        StringBuilder key = new StringBuilder();
+        for (char c : charset) {
+            key.append(c);
+        }
+        key.append('\0').append(round);
+
+        SubImgCharMatcher matcher = matchers.get(key.toString());
+        if (matcher == null) {
+            MatcherRebuildEvent event = new MatcherRebuildEvent();
+            event.begin();
+            char[] chars = new char[charset.size()];
+            int i = 0;
+            for (char c : charset) {
+                chars[i++] = c;
+            }
+            matcher = new SubImgCharMatcher(chars);
+            matcher.setRoundStrategy(round);
+            matchers.put(key.toString(), matcher);
+            event.finish(sessionId, MatcherRebuildEvent.BUILD_OPERATION, 0, chars.length);
+        }
+        return matcher;
+    }
+
+    /**
+     * Parses and validates the requested resolution, using the same bounds as the shell.
+     *
+     * @param resArg the requested resolution, or null for the default one.
+     * @param image the padded image.
+     * @return the resolution.
+     * @throws IllegalArgumentException if the resolution is invalid or out of bounds.
+     */
+    private static int parseResolution(String resArg, Image image) {
+        if (resArg == null) {
+            return Constants.DEFAULT_RESOLUTION;
+        }
+        int resolution;
+        try {
+            resolution = Integer.parseInt(resArg);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(Constants.incorrectFormatMessage(Constants.CHANGE_RESOLUTION));
+        }
+        int minCharsInRow = Math.max(1, image.getWidth() / image.getHeight());
+        if (resolution < minCharsInRow || resolution > image.getWidth() || Integer.bitCount(resolution) != 1) {
+            throw new IllegalArgumentException(Constants.BOUNDARIES_COMMAND);
+        }
+        return resolution;
+    }
+
+    /**
+     * Parses a URL query string.
+     *
+     * @param query the raw query string, or null.
+     * @return the decoded parameters.
+     */
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Sends a plain text response.
+     *
+     * @param exchange the request and its response.
+     * @param status the HTTP status code.
+     * @param text the response text.
+     * @throws IOException if the response cannot be sent.
+     */
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+    }
+
+    /**
+     * Starts a render server on the loopback interface.
+     *
+     * @param args the command-line arguments (optionally the port to listen on).
+     */
+    public static void main(String[] args) {
+        try {
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : Constants.DEFAULT_SERVER_PORT;
+            RenderServer renderServer = new RenderServer(port);
+            renderServer.start();
+            System.out.println(Constants.SERVER_STARTED_MESSAGE + renderServer.getPort());
+        } catch (IOException | NumberFormatException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
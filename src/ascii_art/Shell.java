@@ -1,18 +1,40 @@
 package ascii_art;
 
 import ascii_output.AsciiOutput;
+import ascii_output.AsyncAsciiOutput;
+import ascii_output.CharGrid;
 import factories.AsciiOutputFactory;
 import ascii_output.ConsoleAsciiOutput;
+import ascii_output.TerminalSize;
 import constants.Constants;
 
 import java.lang.IllegalArgumentException;
 
 import exceptions.BoundariesResolutionException;
-import image.Image;
+import exceptions.RenderCancelledException;
 import image.ImageEditor;
+import image.RowSourceImage;
 import image_char_matching.SubImgCharMatcher;
+import render_events.MatcherRebuildEvent;
+import render_events.OutputWriteEvent;
 
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.TreeSet;
 
 /**
@@ -38,11 +60,32 @@ public class Shell {
     /** The output method for ASCII art (e.g., console or file). */
     private AsciiOutput asciiOutput;
 
+    /** The output type the current output was built from, as given to the output command. */
+    private String outputType;
+
     /** The resolution of the ASCII art. */
     private int resolution;
 
     /** The input image to process. */
-    private Image image;
+    private ImageCache.Entry currentImage;
+
+    /** The images of the session, prepared for switching between them. */
+    private final ImageCache imageCache;
+
+    /** The brightness grids of the images rendered by this and earlier runs. */
+    private final BrightnessCache brightnessCache;
+
+    /** The time budget of progressive preview renders in milliseconds, or 0 if they are off. */
+    private long previewBudgetMillis;
+
+    /** The thread refining the last preview into the exact render, or null. */
+    private Thread refineThread;
+
+    /** The deadline of renders in milliseconds, or 0 if they have none. */
+    private long renderDeadlineMillis;
+
+    /** The lines the user enters, read in the background, or null if not interactive. */
+    private InputLines inputLines;
 
     /** Minimum characters per row based on the image aspect ratio. */
     private int minCharsInRow;
@@ -53,16 +96,87 @@ public class Shell {
     /** Singleton instance for managing shared state. */
     private final AsciiArtSingleton singleton;
 
+    /** The reader of the lines the user enters, or null for the keyboard. */
+    private final BufferedReader input;
+
+    /** The stream messages are printed to. */
+    private final PrintStream out;
+
+    /** The stream console outputs write to, or null for stdout. */
+    private final PrintStream console;
+
+    /** Whether the image cache belongs to this shell rather than being shared by sessions. */
+    private final boolean ownsImageCache;
+
+    /** The suffix inserted into the names of output files, before their extensions. */
+    private final String fileNameSuffix;
+
     /**
      * Constructs a new Shell instance with default settings.
      * Initializes the character set, resolution, and output strategy.
      */
     public Shell() {
-        this.charset = Constants.DEFAULT_CHARSET;
+        this(false);
+    }
+
+    /**
+     * Constructs a new Shell instance with default settings, optionally keeping decoded
+     * images outside the Java heap, in raw pixel files cached across runs.
+     *
+     * @param offHeapImages true to keep decoded images off the heap, false otherwise.
+     */
+    public Shell(boolean offHeapImages) {
+        this(new ImageCache((long) (Runtime.getRuntime().maxMemory() * Constants.IMAGE_CACHE_HEAP_FRACTION),
+                        offHeapImages), true,
+                new BrightnessCache(new File(Constants.BRIGHTNESS_CACHE_DIRECTORY),
+                        Constants.BRIGHTNESS_CACHE_MAX_BYTES),
+                AsciiArtSingleton.getInstance(), null, System.out, null, "");
+    }
+
+    /**
+     * Constructs a shell session of a {@link ShellDaemon}, talking to its client rather than
+     * the terminal. The session keeps its own state, and names its output files after its
+     * id, so that concurrent sessions never see each other's renders, while the images and
+     * brightness grids of the caches it shares with them are prepared once for all.
+     *
+     * @param imageCache the image cache shared by the sessions.
+     * @param brightnessCache the disk cache of brightness grids shared by the sessions.
+     * @param input the reader of the lines the client sends.
+     * @param out the stream of the client, for messages and console outputs.
+     */
+    Shell(ImageCache imageCache, BrightnessCache brightnessCache, BufferedReader input, PrintStream out) {
+        this(imageCache, false, brightnessCache, AsciiArtSingleton.newInstance(), input, out, out, null);
+    }
+
+    /**
+     * Constructs a new Shell instance with default settings.
+     *
+     * @param imageCache the image cache.
+     * @param ownsImageCache whether the cache is closed with the shell.
+     * @param brightnessCache the disk cache of brightness grids.
+     * @param singleton the state instance to use.
+     * @param input the reader of the lines the user enters, or null for the keyboard.
+     * @param out the stream messages are printed to.
+     * @param console the stream console outputs write to, or null for stdout.
+     * @param fileNameSuffix the suffix of output file names, or null for the session id.
+     */
+    private Shell(ImageCache imageCache, boolean ownsImageCache, BrightnessCache brightnessCache,
+                  AsciiArtSingleton singleton, BufferedReader input, PrintStream out, PrintStream console,
+                  String fileNameSuffix) {
+        this.imageCache = imageCache;
+        this.ownsImageCache = ownsImageCache;
+        this.brightnessCache = brightnessCache;
+        this.charset = new TreeSet<>(Constants.DEFAULT_CHARSET);
         this.resolution = Constants.DEFAULT_RESOLUTION;
         this.subImgCharMatcher = new SubImgCharMatcher(convertToCharArray(this.charset));
-        this.asciiOutput = new ConsoleAsciiOutput();
-        this.singleton = AsciiArtSingleton.getInstance();
+        this.asciiOutput = new ConsoleAsciiOutput(true, console);
+        this.outputType = Constants.DEFAULT_OUTPUT_TYPE;
+        this.singleton = singleton;
+        this.input = input;
+        this.out = out;
+        this.console = console;
+        this.fileNameSuffix = fileNameSuffix != null ? fileNameSuffix
+                : String.format(Constants.SESSION_FILE_SUFFIX_FORMAT, singleton.getSessionId());
     }
 
     /**
@@ -88,50 +202,736 @@ public class Shell {
      */
     public void run(String imageName) throws IOException {
         createImage(imageName);
-        System.out.print(Constants.ENTER_MESSAGE);
-        String input = KeyboardInput.readLine();
-        while (!input.equals(Constants.EXIT_INPUT)) {
-            if (input.equals(Constants.CHAR_INPUT)) {
-                printChars();
-            } else if (input.startsWith(Constants.ADD_INPUT)) {
-                handleAddCommand(input);
-            } else if (input.startsWith(Constants.REMOVE_INPUT)) {
-                handleRemoveCommand(input);
-            } else if (input.startsWith(Constants.RES_INPUT)) {
-                handleResCommand(input);
-            } else if (input.equals(Constants.RES_INPUT.strip())) {
-                System.out.println(Constants.NEW_RES_MESSAGE + resolution);
-            } else if (input.startsWith(Constants.ROUND_INPUT)) {
-                handleRoundCommand(input);
-            } else if (input.startsWith(Constants.OUTPUT_INPUT)) {
-                handleOutputCommand(input);
-            } else if (input.equals(Constants.ASCII_ART_INPUT.strip()) ||
-                    input.startsWith(Constants.ASCII_ART_INPUT)) {
-                AsciiArtAlgorithm asciiArtAlgorithm = new AsciiArtAlgorithm
-                        (image, resolution, subImgCharMatcher);
-                char[][] resultImage = asciiArtAlgorithm.run();
-                this.asciiOutput.out(resultImage);
+        inputLines = input != null ? new InputLines(input) : new InputLines();
+        try {
+            out.print(Constants.ENTER_MESSAGE);
+            out.flush();
+            String line = readLine();
+            while (!line.equals(Constants.EXIT_INPUT)) {
+                executeCommand(line);
+                out.print(Constants.ENTER_MESSAGE);
+                out.flush();
+                line = readLine();
+            }
+        } finally {
+            awaitRefinement();
+            closeAsciiOutput();
+            closeImage();
+        }
+    }
+
+    /**
+     * Runs the shell non-interactively over a list of commands, without prompts.
+     * Pairs of consecutive commands that cancel out are skipped before they run, and
+     * a timing summary is printed at the end.
+     *
+     * @param imageName the name of the image file to process.
+     * @param commands the commands to run, in order; an exit command ends the run early.
+     * @throws IOException if an error occurs while reading the image file.
+     */
+    public void runBatch(String imageName, List<String> commands) throws IOException {
+        RenderMetrics.setEnabled(true);
+        long startTime = System.nanoTime();
+        createImage(imageName);
+        int executed = 0;
+        int coalesced = 0;
+        int renders = 0;
+        long renderNanos = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            String input = commands.get(i);
+            if (input.equals(Constants.EXIT_INPUT)) {
+                break;
+            }
+            String next = i + 1 < commands.size() ? commands.get(i + 1) : "";
+            if (isCancelledResPair(input, next)) {
+                coalesced += 2;
+                i++;
+                continue;
+            }
+            if (isOverriddenCharsetCommand(input, next)) {
+                coalesced++;
+                continue;
+            }
+            if (isAsciiArtCommand(input)) {
+                long renderStart = System.nanoTime();
+                executeCommand(input);
+                renderNanos += System.nanoTime() - renderStart;
+                renders++;
             } else {
-                System.out.println(Constants.INCORRECT_COMMAND);
+                executeCommand(input);
             }
-            System.out.print(Constants.ENTER_MESSAGE);
-            input = KeyboardInput.readLine();
+            executed++;
         }
+        awaitRefinement();
+        closeAsciiOutput();
+        closeImage();
+        out.println(String.format(Constants.BATCH_SUMMARY_FORMAT, executed, coalesced, renders,
+                renderNanos / 1e6, (System.nanoTime() - startTime) / 1e6));
+        out.println(RenderMetrics.toJson());
+    }
+
+    /**
+     * Reads the next line the user enters.
+     *
+     * @return the trimmed line.
+     * @throws NoSuchElementException if the input ended.
+     */
+    private String readLine() {
+        return inputLines != null ? inputLines.take() : KeyboardInput.readLine();
+    }
+
+    /**
+     * Reads the commands of a batch script, skipping blank lines and comment lines
+     * (starting with "#").
+     *
+     * @param reader the reader of the script.
+     * @return the trimmed commands, in order.
+     * @throws IOException if an error occurs while reading the script.
+     */
+    private static List<String> readScript(BufferedReader reader) throws IOException {
+        List<String> commands = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith(Constants.COMMENT_PREFIX)) {
+                commands.add(line);
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Executes a single command.
+     *
+     * @param input the command to execute.
+     */
+    private void executeCommand(String input) {
+        if (input.equals(Constants.CANCEL_INPUT)) {
+            cancelRefinement();
+            return;
+        }
+        awaitRefinement();
+        if (input.equals(Constants.CHAR_INPUT)) {
+            printChars();
+        } else if (input.startsWith(Constants.ADD_INPUT)) {
+            handleAddCommand(input);
+        } else if (input.startsWith(Constants.REMOVE_INPUT)) {
+            handleRemoveCommand(input);
+        } else if (input.startsWith(Constants.RES_INPUT)) {
+            handleResCommand(input);
+        } else if (input.equals(Constants.RES_INPUT.strip())) {
+            out.println(Constants.NEW_RES_MESSAGE + resolution);
+        } else if (input.startsWith(Constants.ROUND_INPUT)) {
+            handleRoundCommand(input);
+        } else if (input.startsWith(Constants.OUTPUT_INPUT)) {
+            handleOutputCommand(input);
+        } else if (input.startsWith(Constants.IMAGE_INPUT)) {
+            handleImageCommand(input);
+        } else if (input.startsWith(Constants.LOAD_INPUT)) {
+            handleLoadCommand(input);
+        } else if (input.equals(Constants.WATCH_INPUT)) {
+            handleWatchCommand();
+        } else if (input.startsWith(Constants.PREVIEW_INPUT)) {
+            handlePreviewCommand(input);
+        } else if (input.startsWith(Constants.DEADLINE_INPUT)) {
+            handleDeadlineCommand(input);
+        } else if (input.startsWith(Constants.ASCII_ART_INPUT) && !input.substring(
+                Constants.ASCII_ART_INPUT.length()).isBlank()) {
+            handleMultiResCommand(input);
+        } else if (isAsciiArtCommand(input)) {
+            renderAsciiArt();
+        } else if (input.equals(Constants.STATS_INPUT) || input.startsWith(Constants.STATS_INPUT + " ")) {
+            handleStatsCommand(input);
+        } else {
+            out.println(Constants.INCORRECT_COMMAND);
+        }
+    }
+
+    /**
+     * Renders the current image with the current settings to the current output, as a
+     * preview first if previews are on.
+     */
+    private void renderAsciiArt() {
+        AsciiArtAlgorithm asciiArtAlgorithm = createAsciiArtAlgorithm();
+        if (previewBudgetMillis > 0 && renderPreview(asciiArtAlgorithm)) {
+            return;
+        }
+        CharGrid resultImage;
+        try {
+            resultImage = renderCancellably(asciiArtAlgorithm);
+        } catch (UncheckedIOException e) {
+            out.println(Constants.INVALID_IMAGE_PATH);
+            return;
+        }
+        if (resultImage != null) {
+            outputRender(resultImage);
+        }
+    }
+
+    /**
+     * Handles the command to render several resolutions at once: "asciiArt &lt;res&gt;
+     * &lt;res&gt; ..." calculates the brightness grids of all of them in a single pass over
+     * the pixels of the image, maps each with the current charset, and writes each to its own
+     * output of the current output type, whose files are named after its resolution (e.g.,
+     * "out-64.html"). The current resolution and the state of the previous render are left
+     * unchanged.
+     *
+     * @param input the user input listing the resolutions.
+     */
+    private void handleMultiResCommand(String input) {
+        int[] resolutions;
+        try {
+            resolutions = parseResolutions(input.substring(Constants.ASCII_ART_INPUT.length()).strip());
+        } catch (BoundariesResolutionException | IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return;
+        }
+        AsciiArtAlgorithm asciiArtAlgorithm = createAsciiArtAlgorithm();
+        Map<Integer, BrightnessCache.Grid> grids;
+        try {
+            grids = asciiArtAlgorithm.calculateGrids(resolutions);
+        } catch (UncheckedIOException e) {
+            out.println(Constants.INVALID_IMAGE_PATH);
+            return;
+        }
+        imageCache.trim();
+        // Outputs of several resolutions are written in order, so not asynchronously
+        String singleOutputType = outputType.split(" ")[0];
+        for (int gridResolution : resolutions) {
+            BrightnessCache.Grid grid = grids.get(gridResolution);
+            CharGrid resultImage = asciiArtAlgorithm.match(grid);
+            AsciiOutput output = new AsciiOutputFactory(fileNameSuffix + String.format(
+                    Constants.MULTI_RES_FILE_SUFFIX_FORMAT, gridResolution), console)
+                    .buildAsciiOutput(singleOutputType);
+            out.println(String.format(Constants.MULTI_RES_HEADER_FORMAT, gridResolution));
+            output.describeRender(convertToCharArray(charset), subImgCharMatcher.getRoundStrategyName(),
+                    grid.getBrightnesses());
+            OutputWriteEvent event = new OutputWriteEvent();
+            event.begin();
+            RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.OUTPUT);
+            output.out(resultImage, grid.getColors());
+            RenderMetrics.end(measurement);
+            event.finish(singleton.getSessionId(), singleOutputType, resultImage.getWidth() * resultImage.getHeight());
+        }
+    }
+
+    /**
+     * Parses the resolutions of a command rendering several resolutions.
+     *
+     * @param args the resolutions, separated by spaces.
+     * @return the resolutions, in order.
+     * @throws IllegalArgumentException if a resolution is not a number or not a power of two.
+     * @throws BoundariesResolutionException if a resolution exceeds the boundaries of the image.
+     */
+    private int[] parseResolutions(String args) {
+        String[] parts = args.split("\\s+");
+        int[] resolutions = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                resolutions[i] = Integer.parseInt(parts[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(Constants.incorrectFormatMessage(Constants.MULTI_RES_COMMAND));
+            }
+            if (Integer.bitCount(resolutions[i]) != 1) {
+                throw new IllegalArgumentException(Constants.incorrectFormatMessage(Constants.MULTI_RES_COMMAND));
+            }
+            if (resolutions[i] < minCharsInRow || resolutions[i] > maxCharsInRow) {
+                throw new BoundariesResolutionException();
+            }
+        }
+        return resolutions;
+    }
+
+    /**
+     * Creates the algorithm rendering the current image with the current settings.
+     *
+     * @return the algorithm.
+     */
+    private AsciiArtAlgorithm createAsciiArtAlgorithm() {
+        RowSourceImage rowSourceImage = currentImage.getRowSourceImage();
+        ImageCache.Entry entry = currentImage;
+        AsciiArtAlgorithm asciiArtAlgorithm = rowSourceImage != null
+                ? new AsciiArtAlgorithm(rowSourceImage, resolution, subImgCharMatcher, singleton)
+                : new AsciiArtAlgorithm(() -> entry.loadImage(singleton.getSessionId()),
+                        resolution, subImgCharMatcher, singleton);
+        asciiArtAlgorithm.useBrightnessCache(brightnessCache, entry.getImageHash());
+        asciiArtAlgorithm.useImageGrids(entry.getGrids());
+        return asciiArtAlgorithm;
+    }
+
+    /**
+     * Writes a render to the current output.
+     *
+     * @param resultImage the ASCII art of the render.
+     */
+    private void outputRender(CharGrid resultImage) {
+        imageCache.trim();
+        this.asciiOutput.describeRender(convertToCharArray(charset),
+                subImgCharMatcher.getRoundStrategyName(), singleton.getPrevSubImagesBrightnesses());
+        OutputWriteEvent event = new OutputWriteEvent();
+        event.begin();
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.OUTPUT);
+        this.asciiOutput.out(resultImage, singleton.getPrevSubImagesColors());
+        RenderMetrics.end(measurement);
+        event.finish(singleton.getSessionId(), outputType, resultImage.getWidth() * resultImage.getHeight());
+    }
+
+    /**
+     * Handles the command to set the time budget of progressive renders: "preview &lt;ms&gt;"
+     * makes every render that must calculate brightness first output an approximation
+     * calculated within the budget, and "preview off" turns previews off.
+     *
+     * @param input the user input specifying the budget.
+     */
+    private void handlePreviewCommand(String input) {
+        try {
+            previewBudgetMillis = parseMillisArg(input.substring(Constants.PREVIEW_INPUT.length()).strip(),
+                    Constants.PREVIEW_OFF, Constants.PREVIEW_COMMAND);
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Handles the command to set the deadline of renders: "deadline &lt;ms&gt;" stops every
+     * render still running after the given time and outputs the best result available in
+     * its place, and "deadline off" lets renders run to the end.
+     *
+     * @param input the user input specifying the deadline.
+     */
+    private void handleDeadlineCommand(String input) {
+        try {
+            renderDeadlineMillis = parseMillisArg(input.substring(Constants.DEADLINE_INPUT.length()).strip(),
+                    Constants.DEADLINE_OFF, Constants.DEADLINE_COMMAND);
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Parses a duration argument, either a positive number of milliseconds or the argument
+     * turning the duration off.
+     *
+     * @param arg the argument.
+     * @param offArg the argument turning the duration off.
+     * @param command the description of the command, for the error message.
+     * @return the duration in milliseconds, or 0 if turned off.
+     * @throws IllegalArgumentException if the argument is neither.
+     */
+    private static long parseMillisArg(String arg, String offArg, String command) {
+        if (arg.equals(offArg)) {
+            return 0;
+        }
+        try {
+            long millis = Long.parseLong(arg);
+            if (millis > 0) {
+                return millis;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(Constants.incorrectFormatMessage(command));
+    }
+
+    /**
+     * Runs a render so that it can be stopped, by entering a cancel line while it runs (in an
+     * interactive session) or by the render deadline. A stopped render leaves the state of
+     * the previous one unchanged, and the best result available is output in its place.
+     * Renders that cannot be stopped run on the shell's own thread.
+     *
+     * @param asciiArtAlgorithm the algorithm of the render.
+     * @return the ASCII art of the render, or null if it was stopped.
+     * @throws UncheckedIOException if the image cannot be read.
+     */
+    private CharGrid renderCancellably(AsciiArtAlgorithm asciiArtAlgorithm) {
+        if (inputLines == null && renderDeadlineMillis == 0) {
+            return asciiArtAlgorithm.run();
+        }
+        FutureTask<CharGrid> task = new FutureTask<>(asciiArtAlgorithm::run);
+        Thread renderThread = new Thread(task, Constants.RENDER_THREAD_NAME);
+        renderThread.start();
+        if (!awaitRender(task)) {
+            renderThread.interrupt();
+        }
+        try {
+            renderThread.join();
+            // The render may have finished before it noticed the interruption
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            renderThread.interrupt();
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof RenderCancelledException)) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                        : new IllegalStateException(e.getCause());
+            }
+        }
+        out.println(Constants.RENDER_CANCELLED_MESSAGE);
+        CharGrid bestImage = asciiArtAlgorithm.bestAvailable();
+        if (bestImage != null) {
+            out.println(Constants.BEST_AVAILABLE_MESSAGE);
+            outputApproximation(bestImage, asciiArtAlgorithm.getApproximateColors());
+        }
+        return null;
+    }
+
+    /**
+     * Waits for a render until it finishes, the user enters a cancel line, or its deadline
+     * passes.
+     *
+     * @param task the render.
+     * @return true if the render finished, false if it should be stopped.
+     */
+    private boolean awaitRender(FutureTask<CharGrid> task) {
+        long deadline = renderDeadlineMillis > 0
+                ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(renderDeadlineMillis) : Long.MAX_VALUE;
+        while (true) {
+            long waitNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(Constants.CANCEL_POLL_MILLIS),
+                    deadline - System.nanoTime());
+            try {
+                task.get(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+                return true;
+            } catch (ExecutionException e) {
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (TimeoutException e) {
+                if (System.nanoTime() >= deadline || (inputLines != null && inputLines.takeCancel())) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes an approximate result to the current output, without recording it as a render.
+     *
+     * @param approximateImage the approximate ASCII art.
+     * @param colors the average colors of its sub-images, or null.
+     */
+    private void outputApproximation(CharGrid approximateImage, int[][] colors) {
+        OutputWriteEvent event = new OutputWriteEvent();
+        event.begin();
+        RenderMetrics.Measurement measurement = RenderMetrics.begin(RenderMetrics.Stage.OUTPUT);
+        this.asciiOutput.out(approximateImage, colors);
+        RenderMetrics.end(measurement);
+        event.finish(singleton.getSessionId(), outputType, approximateImage.getWidth() * approximateImage.getHeight());
+    }
+
+    /**
+     * Outputs a preview of a render, then refines it into the exact render on a background
+     * thread, which outputs it again. The next command waits for the refinement.
+     *
+     * @param asciiArtAlgorithm the algorithm of the render.
+     * @return true if a preview was output, false if the render should run as usual.
+     */
+    private boolean renderPreview(AsciiArtAlgorithm asciiArtAlgorithm) {
+        CharGrid previewImage;
+        try {
+            previewImage = asciiArtAlgorithm.preview(previewBudgetMillis);
+        } catch (UncheckedIOException e) {
+            out.println(Constants.INVALID_IMAGE_PATH);
+            return true;
+        }
+        if (previewImage == null) {
+            return false;
+        }
+        outputApproximation(previewImage, asciiArtAlgorithm.getApproximateColors());
+        refineThread = new Thread(() -> {
+            CharGrid resultImage;
+            try {
+                resultImage = asciiArtAlgorithm.run();
+            } catch (UncheckedIOException e) {
+                out.println(Constants.INVALID_IMAGE_PATH);
+                return;
+            } catch (RenderCancelledException e) {
+                out.println(e.getMessage());
+                return;
+            }
+            outputRender(resultImage);
+        }, Constants.REFINE_THREAD_NAME);
+        refineThread.start();
+        return true;
+    }
+
+    /**
+     * Cancels the refinement of the last preview, if it is still running, leaving the
+     * preview as the result.
+     */
+    private void cancelRefinement() {
+        if (refineThread == null || !refineThread.isAlive()) {
+            out.println(Constants.NOTHING_TO_CANCEL_MESSAGE);
+            return;
+        }
+        refineThread.interrupt();
+        awaitRefinement();
+    }
+
+    /**
+     * Waits for the refinement of the last preview, if it is still running, so that no
+     * command changes the state it renders with.
+     */
+    private void awaitRefinement() {
+        if (refineThread == null) {
+            return;
+        }
+        try {
+            refineThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        refineThread = null;
+    }
+
+    /**
+     * Handles the watch command: renders the current image, then renders it again whenever
+     * its file changes, until the user enters a line (or the input ends). A changed image of
+     * the same dimensions recalculates the brightness of only the sub-images whose pixels
+     * changed, found by comparing their checksums.
+     */
+    private void handleWatchCommand() {
+        FileWatcher watcher;
+        try {
+            watcher = new FileWatcher(Paths.get(currentImage.getImageName()));
+        } catch (IOException e) {
+            out.println(Constants.INVALID_IMAGE_PATH);
+            return;
+        }
+        out.println(Constants.WATCH_MESSAGE);
+        // Renders happen on the watching thread while this one only waits for the user
+        Thread watchThread = new Thread(() -> watchImage(watcher), Constants.WATCH_THREAD_NAME);
+        watchThread.start();
+        try {
+            readLine();
+        } catch (NoSuchElementException e) {
+            // The input ended, so nothing can stop the watch later
+        }
+        watcher.close();
+        try {
+            watchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Renders the current image, then renders it again on every change of its file, until
+     * the watcher is closed.
+     *
+     * @param watcher the watcher of the image file.
+     */
+    private void watchImage(FileWatcher watcher) {
+        long[][] checksums = renderWatchedImage(null);
+        try {
+            while (watcher.awaitChange(Constants.WATCH_DEBOUNCE_MILLIS)) {
+                try {
+                    createImage(currentImage.getImageName());
+                } catch (IOException e) {
+                    out.println(Constants.INVALID_IMAGE_PATH);
+                    continue;
+                }
+                if (checksums == null) {
+                    singleton.changeImage();
+                }
+                fitResolution();
+                checksums = renderWatchedImage(checksums);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Renders the current image, recalculating only the sub-images whose checksums changed
+     * if the checksums of the previous version are known.
+     *
+     * @param prevChecksums the sub-image checksums of the previous version of the image, or
+     *                      null to render it in full.
+     * @return the sub-image checksums of the image, or null if it is not held in memory.
+     */
+    private long[][] renderWatchedImage(long[][] prevChecksums) {
+        AsciiArtAlgorithm asciiArtAlgorithm = createAsciiArtAlgorithm();
+        CharGrid resultImage;
+        long[][] checksums = null;
+        try {
+            if (currentImage.getRowSourceImage() != null) {
+                resultImage = asciiArtAlgorithm.run();
+            } else {
+                checksums = ImageEditor.calculateSubImageChecksums(
+                        currentImage.loadImage(singleton.getSessionId()), resolution);
+                resultImage = prevChecksums == null ? asciiArtAlgorithm.run()
+                        : asciiArtAlgorithm.runEdited(prevChecksums, checksums);
+            }
+        } catch (UncheckedIOException e) {
+            out.println(Constants.INVALID_IMAGE_PATH);
+            return prevChecksums;
+        }
+        outputRender(resultImage);
+        return checksums;
+    }
+
+    /**
+     * Handles the stats command: "stats" prints the per-stage render metrics, and
+     * "stats on", "stats off" and "stats reset" turn recording on, off, or clear it.
+     *
+     * @param input the user input.
+     */
+    private void handleStatsCommand(String input) {
+        String[] parts = input.split(" ");
+        if (parts.length == 1) {
+            if (!RenderMetrics.isEnabled()) {
+                out.println(Constants.STATS_DISABLED_MESSAGE);
+            }
+            out.print(RenderMetrics.toTable());
+        } else if (parts[1].equals(Constants.STATS_ON)) {
+            RenderMetrics.setEnabled(true);
+        } else if (parts[1].equals(Constants.STATS_OFF)) {
+            RenderMetrics.setEnabled(false);
+        } else if (parts[1].equals(Constants.STATS_RESET)) {
+            RenderMetrics.reset();
+        } else {
+            out.println(Constants.incorrectFormatMessage(Constants.STATS_COMMAND));
+        }
+    }
+
+    /**
+     * Checks if a command renders ASCII art.
+     *
+     * @param input the command to check.
+     * @return true if the command is an asciiArt command, false otherwise.
+     */
+    private boolean isAsciiArtCommand(String input) {
+        return input.equals(Constants.ASCII_ART_INPUT.strip()) || input.startsWith(Constants.ASCII_ART_INPUT);
+    }
+
+    /**
+     * Checks if two consecutive commands are a "res up" and a "res down" (in either order)
+     * that would both succeed, the second from the resolution the first sets, and so leave
+     * the current resolution unchanged.
+     *
+     * @param input the first command.
+     * @param next the command following it.
+     * @return true if both commands can be skipped, false otherwise.
+     */
+    private boolean isCancelledResPair(String input, String next) {
+        String up = Constants.RES_INPUT + Constants.RES_UP;
+        String down = Constants.RES_INPUT + Constants.RES_DOWN;
+        if (input.equals(up) && next.equals(down)) {
+            return canDoubleResolution(resolution) && canHalveResolution(resolution * 2);
+        }
+        if (input.equals(down) && next.equals(up)) {
+            return canHalveResolution(resolution) && canDoubleResolution(resolution / 2)
+                    && resolution / 2 * 2 == resolution;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if "res up" would succeed from a resolution.
+     *
+     * @param fromResolution the resolution.
+     * @return true if doubling the resolution stays within the image bounds, false otherwise.
+     */
+    private boolean canDoubleResolution(int fromResolution) {
+        return maxCharsInRow >= fromResolution * 2;
+    }
+
+    /**
+     * Checks if "res down" would succeed from a resolution.
+     *
+     * @param fromResolution the resolution.
+     * @return true if halving the resolution stays within the image bounds, false otherwise.
+     */
+    private boolean canHalveResolution(int fromResolution) {
+        return minCharsInRow * 2 <= fromResolution;
+    }
+
+    /**
+     * Checks if a valid add or remove command is immediately followed by an add or remove
+     * command with the same argument, which determines the charset on its own.
+     *
+     * @param input the first command.
+     * @param next the command following it.
+     * @return true if the first command can be skipped, false otherwise.
+     */
+    private boolean isOverriddenCharsetCommand(String input, String next) {
+        String arg = charsetCommandArg(input);
+        return arg != null && arg.equals(charsetCommandArg(next)) && isValidCharsetArg(arg);
+    }
+
+    /**
+     * Gets the argument of an add or remove command.
+     *
+     * @param input the command.
+     * @return the argument, or null if the command is not an add or remove command.
+     */
+    private String charsetCommandArg(String input) {
+        if (input.startsWith(Constants.ADD_INPUT)) {
+            return input.substring(Constants.ADD_INPUT.length());
+        }
+        if (input.startsWith(Constants.REMOVE_INPUT)) {
+            return input.substring(Constants.REMOVE_INPUT.length());
+        }
+        return null;
+    }
+
+    /**
+     * Checks if an argument is accepted by both the add and remove commands.
+     *
+     * @param arg the argument to check.
+     * @return true if the argument is valid, false otherwise.
+     */
+    private boolean isValidCharsetArg(String arg) {
+        return arg.equals(Constants.ALL_ARG) || arg.equals(Constants.SPACE_ARG)
+                || (arg.length() == 3 && isValidRange(arg))
+                || (arg.length() == 1 && isValidChar(arg.charAt(0)));
     }
 
     /**
      * Handles the output command to change the ASCII art output method.
      *
-     * @param input the user input specifying the new output method.
+     * @param input the user input specifying the new output method, optionally
+     *              followed by "async" to write outputs on a background thread.
      */
     private void handleOutputCommand(String input) {
         try {
             String[] parts = input.split(" ");
             String resArg = parts[1];
-            AsciiOutputFactory factory = new AsciiOutputFactory();
-            this.asciiOutput = factory.buildAsciiOutput(resArg);
+            AsciiOutputFactory factory = new AsciiOutputFactory(fileNameSuffix, console);
+            AsciiOutput newOutput = factory.buildAsciiOutput(resArg);
+            if (parts.length > 2) {
+                if (!parts[2].equals(Constants.ASYNC_ARG)) {
+                    throw new IllegalArgumentException(Constants.incorrectFormatMessage
+                            (Constants.OUTPUT_COMMAND));
+                }
+                newOutput = new AsyncAsciiOutput(newOutput);
+            }
+            closeAsciiOutput();
+            this.asciiOutput = newOutput;
+            this.outputType = input.substring(Constants.OUTPUT_INPUT.length());
         } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
+            out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the images of the session, and, if the image cache is not shared, the
+     * off-heap memory of those that have any.
+     */
+    private void closeImage() {
+        imageCache.release(currentImage);
+        if (ownsImageCache) {
+            imageCache.close();
+        }
+    }
+
+    /**
+     * Waits for the current output to finish its pending writes, if it writes asynchronously.
+     */
+    private void closeAsciiOutput() {
+        if (asciiOutput instanceof AsyncAsciiOutput) {
+            ((AsyncAsciiOutput) asciiOutput).close();
         }
     }
 
@@ -145,26 +945,95 @@ public class Shell {
             String[] parts = input.split(" ");
             String resArg = parts[1];
             subImgCharMatcher.setRoundStrategy(resArg);
+            singleton.changeRoundStrategy();
         } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
+            out.println(e.getMessage());
         }
     }
 
     /**
-     * Creates and prepares the image for ASCII art generation.
+     * Makes an image the input of the session, taking it from the image cache (which
+     * prepares it if it is not cached yet).
      *
      * @param imageName the name of the image file.
      * @throws IOException if the image cannot be read.
      */
     private void createImage(String imageName) throws IOException {
-        image = new Image(imageName);
-        image = ImageEditor.padImage(image);
-        minCharsInRow = Math.max(1, image.getWidth() / image.getHeight());
-        maxCharsInRow = image.getWidth();
+        ImageCache.Entry prevImage = currentImage;
+        currentImage = imageCache.get(imageName, singleton.getSessionId());
+        if (prevImage != null) {
+            imageCache.release(prevImage);
+            imageCache.trim();
+        }
+        minCharsInRow = Math.max(1, currentImage.getPaddedWidth() / currentImage.getPaddedHeight());
+        maxCharsInRow = currentImage.getPaddedWidth();
+    }
+
+    /**
+     * Handles the command to switch the input image. Nothing of the previous image's
+     * renders is reused, and the resolution is halved or doubled until it fits the new
+     * image. If the image cannot be read, the previous image stays the input.
+     *
+     * @param input the user input specifying the image file.
+     */
+    private void handleImageCommand(String input) {
+        String imageName = input.substring(Constants.IMAGE_INPUT.length()).strip();
+        try {
+            createImage(imageName);
+        } catch (IOException e) {
+            out.println(Constants.INVALID_IMAGE_PATH);
+            return;
+        }
+        singleton.changeImage();
+        fitResolution();
+    }
+
+    /**
+     * Handles the command to warm the render cache from a binary archive of the current
+     * image, written by the binaryCached output. The resolution becomes the archive's, so
+     * the next render only matches chars.
+     *
+     * @param input the user input specifying the archive file.
+     */
+    private void handleLoadCommand(String input) {
+        String archiveName = input.substring(Constants.LOAD_INPUT.length()).strip();
+        AsciiArtArchive archive;
+        try {
+            archive = AsciiArtArchive.load(archiveName);
+        } catch (IOException e) {
+            out.println(Constants.INVALID_ARCHIVE);
+            return;
+        }
+        if (!archive.warmCache(singleton, currentImage.getPaddedWidth(), currentImage.getPaddedHeight(),
+                convertToCharArray(charset), subImgCharMatcher.getRoundStrategyName())) {
+            out.println(Constants.ARCHIVE_MISMATCH);
+            return;
+        }
+        resolution = archive.getResolution();
+        out.println(Constants.NEW_RES_MESSAGE + resolution);
+    }
+
+    /**
+     * Halves or doubles the resolution until it fits the current image, announcing the
+     * new resolution if it changed.
+     */
+    private void fitResolution() {
+        int prevResolution = resolution;
+        while (resolution > maxCharsInRow) {
+            resolution /= 2;
+        }
+        while (resolution < minCharsInRow) {
+            resolution *= 2;
+        }
+        if (resolution != prevResolution) {
+            out.println(Constants.NEW_RES_MESSAGE + resolution);
+        }
     }
 
     /**
      * Handles the resolution command to adjust the resolution of the ASCII art.
+     * "res auto" may be followed by the number of terminal columns to fit, which is otherwise
+     * asked from the terminal.
      *
      * @param input the user input specifying the resolution change.
      */
@@ -172,13 +1041,102 @@ public class Shell {
         try {
             String[] parts = input.split(" ");
             String resArg = parts[1];
+            if (resArg.equals(Constants.RES_AUTO)) {
+                int columns = parts.length > 2 ? parseColumns(parts[2]) : terminalColumns();
+                if (columns > 0) {
+                    out.println(Constants.TERMINAL_WIDTH_MESSAGE + columns);
+                } else {
+                    columns = Constants.DEFAULT_TERMINAL_COLUMNS;
+                    out.println(Constants.TERMINAL_WIDTH_MESSAGE + columns + Constants.DEFAULT_TERMINAL_WIDTH_NOTE);
+                }
+                resolution = chooseAutoResolution(columns);
+                out.println(Constants.NEW_RES_MESSAGE + resolution);
+                renderAsciiArt();
+                return;
+            }
             changeRes(resArg);
-            System.out.println(Constants.NEW_RES_MESSAGE + resolution);
+            out.println(Constants.NEW_RES_MESSAGE + resolution);
         } catch (BoundariesResolutionException | IllegalArgumentException e) {
-            System.out.println(e.getMessage());
+            out.println(e.getMessage());
         }
     }
 
+    /**
+     * Chooses the largest resolution within the boundaries of the image whose ASCII art
+     * fits the width of the terminal and whose render is estimated to take no longer than
+     * the latency budget: the render deadline, if there is one. Renders are estimated from
+     * the size of the image, whether a brightness grid at the resolution is cached, and the
+     * timings of earlier renders, so no trial render runs.
+     *
+     * @param columns the number of columns of the terminal.
+     * @return the chosen resolution, or the smallest one if none fits.
+     */
+    private int chooseAutoResolution(int columns) {
+        int targetWidth = columns / Constants.COLUMNS_PER_CHAR;
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(
+                renderDeadlineMillis > 0 ? renderDeadlineMillis : Constants.DEFAULT_AUTO_RES_BUDGET_MILLIS);
+        long pixels = (long) currentImage.getPaddedWidth() * currentImage.getPaddedHeight();
+        int chosen = minCharsInRow;
+        for (int candidate = minCharsInRow * 2; candidate <= maxCharsInRow && candidate <= targetWidth;
+             candidate *= 2) {
+            long subImages = (long) candidate * (currentImage.getPaddedHeight()
+                    / (currentImage.getPaddedWidth() / candidate));
+            boolean gridCached = candidate == singleton.getPrevResolution()
+                    || currentImage.getGrids().containsKey(candidate)
+                    || brightnessCache.contains(currentImage.getImageHash(), candidate);
+            if (RenderCostModel.estimateNanos(pixels, subImages, gridCached) <= budgetNanos) {
+                chosen = candidate;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Gets the number of columns of the terminal, asking the terminal itself first, since
+     * interactive shells such as bash and zsh do not export COLUMNS. A session of a
+     * {@link ShellDaemon} renders to its client rather than to the terminal, so it only goes
+     * by COLUMNS.
+     *
+     * @return the columns the terminal reports, or 0 if it does not.
+     */
+    private int terminalColumns() {
+        if (console == null) {
+            TerminalSize size = TerminalSize.query();
+            if (size != null) {
+                return size.getColumns();
+            }
+        }
+        try {
+            String columns = System.getenv(Constants.COLUMNS_VARIABLE);
+            if (columns != null) {
+                return Math.max(1, Integer.parseInt(columns.strip()));
+            }
+        } catch (NumberFormatException e) {
+            // The terminal does not report its columns
+        }
+        return 0;
+    }
+
+    /**
+     * Parses the number of terminal columns given to the automatic resolution command.
+     *
+     * @param columnsArg the number of columns.
+     * @return the number of columns.
+     * @throws IllegalArgumentException if the argument is not a positive number.
+     */
+    private static int parseColumns(String columnsArg) {
+        int columns;
+        try {
+            columns = Integer.parseInt(columnsArg);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(Constants.incorrectFormatMessage(Constants.CHANGE_RESOLUTION));
+        }
+        if (columns <= 0) {
+            throw new IllegalArgumentException(Constants.incorrectFormatMessage(Constants.CHANGE_RESOLUTION));
+        }
+        return columns;
+    }
+
     /**
      * Changes the resolution of the ASCII art.
      *
@@ -187,12 +1145,12 @@ public class Shell {
      */
     private void changeRes(String resArg) throws IllegalArgumentException {
         if (resArg.equals(Constants.RES_UP)) {
-            if (maxCharsInRow < resolution * 2) {
+            if (!canDoubleResolution(resolution)) {
                 throw new BoundariesResolutionException();
             }
             resolution *= 2;
         } else if (resArg.equals(Constants.RES_DOWN)) {
-            if (minCharsInRow * 2 > resolution) {
+            if (!canHalveResolution(resolution)) {
                 throw new BoundariesResolutionException();
             }
             resolution /= 2;
@@ -210,9 +1168,13 @@ public class Shell {
         try {
             String[] parts = input.split(" ");
             String removeArg = parts[1];
+            MatcherRebuildEvent event = new MatcherRebuildEvent();
+            event.begin();
+            int sizeBefore = charset.size();
             removeFromCharset(removeArg);
+            event.finish(singleton.getSessionId(), input, sizeBefore, charset.size());
         } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
+            out.println(e.getMessage());
         }
     }
 
@@ -272,9 +1234,13 @@ public class Shell {
         try {
             String[] parts = input.split(" ");
             String addArg = parts[1];
+            MatcherRebuildEvent event = new MatcherRebuildEvent();
+            event.begin();
+            int sizeBefore = charset.size();
             addToCharset(addArg);
+            event.finish(singleton.getSessionId(), input, sizeBefore, charset.size());
         } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
+            out.println(e.getMessage());
         }
     }
 
@@ -372,20 +1338,44 @@ public class Shell {
      */
     private void printChars() {
         for (char c : charset) {
-            System.out.print(c + " ");
+            out.print(c + " ");
         }
-        System.out.println();
+        out.println();
     }
 
     /**
      * The entry point for the Shell application.
      *
-     * @param args the command-line arguments (expects the image file name as the first argument).
+     * @param args the command-line arguments (expects the image file name as the first argument,
+     *             optionally followed by a script file to run, or by "--batch" to run the
+     *             script read from the standard input, and optionally ending with
+     *             "--off-heap" to keep decoded images off the heap).
      */
     public static void main(String[] args) {
-        Shell shell = new Shell();
+        boolean offHeapImages = args.length > 1 && args[args.length - 1].equals(Constants.OFF_HEAP_ARG);
+        if (offHeapImages) {
+            args = Arrays.copyOf(args, args.length - 1);
+        }
+        Shell shell = new Shell(offHeapImages);
+        if (args.length < 2) {
+            try {
+                shell.run(args[0]);
+            } catch (IOException e) {
+                System.out.println(Constants.INVALID_IMAGE_PATH);
+            }
+            return;
+        }
+        List<String> commands;
+        try (BufferedReader reader = args[1].equals(Constants.BATCH_ARG)
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : Files.newBufferedReader(Paths.get(args[1]))) {
+            commands = readScript(reader);
+        } catch (IOException e) {
+            System.out.println(Constants.INVALID_SCRIPT_PATH);
+            return;
+        }
         try {
-            shell.run(args[0]);
+            shell.runBatch(args[0], commands);
         } catch (IOException e) {
             System.out.println(Constants.INVALID_IMAGE_PATH);
         }
@@ -0,0 +1,187 @@
+package ascii_art;
+
+import constants.Constants;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ShellDaemon class runs shell sessions for clients connecting to a socket on the local
+ * machine, so that several users drive one warm JVM and none of them pays its startup cost.
+ *
+ * <p>Every connection is a session of the {@link Shell}: the client sends the lines a user
+ * would enter, one per line, and receives what the shell prints, console renders included.
+ * Sessions are isolated from each other: every one has its own charset, resolution, output
+ * and {@link AsciiArtSingleton}, and names its output files after its id. They share what
+ * is read-only once prepared: the decoded images of the {@link ImageCache}, the brightness
+ * grids of the {@link BrightnessCache} and the brightness of every glyph.</p>
+ *
+ * <p>Every session runs on its own virtual thread when the JVM supports them, and on a pooled
+ * platform thread otherwise. The number of sessions at once is bounded, and connections beyond
+ * the bound are told so and closed.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class ShellDaemon {
+
+    /** Maximal number of sessions at once. */
+    private static final int MAX_SESSIONS = 64;
+
+    /** The socket clients connect to. */
+    private final ServerSocket serverSocket;
+
+    /** The executor sessions run on. */
+    private final ExecutorService executor;
+
+    /** Permits for sessions. */
+    private final Semaphore sessions;
+
+    /** The image cache shared by the sessions. */
+    private final ImageCache imageCache;
+
+    /** The disk cache of brightness grids shared by the sessions. */
+    private final BrightnessCache brightnessCache;
+
+    /** The image every session starts with. */
+    private final String imageName;
+
+    /**
+     * Constructs a daemon bound to the loopback interface, without accepting connections.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @param imageName the image every session starts with.
+     * @param offHeapImages whether decoded images are kept off the heap.
+     * @throws IOException if the socket cannot be bound.
+     */
+    public ShellDaemon(int port, String imageName, boolean offHeapImages) throws IOException {
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.executor = RenderServer.newRequestExecutor();
+        this.sessions = new Semaphore(MAX_SESSIONS);
+        this.imageCache = new ImageCache(
+                (long) (Runtime.getRuntime().maxMemory() * Constants.IMAGE_CACHE_HEAP_FRACTION), offHeapImages);
+        this.brightnessCache = new BrightnessCache(new File(Constants.BRIGHTNESS_CACHE_DIRECTORY),
+                Constants.BRIGHTNESS_CACHE_MAX_BYTES);
+        this.imageName = imageName;
+    }
+
+    /**
+     * Gets the port the daemon listens on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections and starts a session for every one, until the daemon is closed.
+     *
+     * @throws IOException if accepting a connection fails other than by closing the daemon.
+     */
+    public void serve() throws IOException {
+        while (true) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            if (!sessions.tryAcquire()) {
+                try (Socket busySocket = socket) {
+                    busySocket.getOutputStream().write(
+                            (Constants.DAEMON_BUSY + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    // The client is gone anyway
+                }
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    runSession(socket);
+                } finally {
+                    sessions.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs a shell session over a connection until the client exits or disconnects.
+     *
+     * @param socket the connection.
+     */
+    private void runSession(Socket socket) {
+        try (Socket session = socket;
+             BufferedReader input = new BufferedReader(
+                     new InputStreamReader(session.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(session.getOutputStream(), false, StandardCharsets.UTF_8)) {
+            Shell shell = new Shell(imageCache, brightnessCache, input, out);
+            try {
+                shell.run(imageName);
+            } catch (IOException e) {
+                out.println(Constants.INVALID_IMAGE_PATH);
+            } catch (NoSuchElementException e) {
+                // The client disconnected without exiting
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client is gone
+        }
+    }
+
+    /**
+     * Stops accepting connections, waits for the sessions in progress to end, and releases
+     * the off-heap memory of the shared images.
+     *
+     * @throws IOException if the socket cannot be closed.
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        imageCache.close();
+    }
+
+    /**
+     * Starts a shell daemon on the loopback interface.
+     *
+     * @param args the command-line arguments (the image file name every session starts with,
+     *             optionally followed by the port to listen on, and optionally ending with
+     *             "--off-heap" to keep decoded images off the heap).
+     */
+    public static void main(String[] args) {
+        boolean offHeapImages = args.length > 1 && args[args.length - 1].equals(Constants.OFF_HEAP_ARG);
+        if (offHeapImages) {
+            args = Arrays.copyOf(args, args.length - 1);
+        }
+        try {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : Constants.DEFAULT_DAEMON_PORT;
+            ShellDaemon shellDaemon = new ShellDaemon(port, args[0], offHeapImages);
+            System.out.println(Constants.DAEMON_STARTED_MESSAGE + shellDaemon.getPort());
+            shellDaemon.serve();
+        } catch (IOException | NumberFormatException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package ascii_output;
+
+import java.io.PrintStream;
+
+/**
+ * The AnsiAsciiOutput class outputs a 2D array of chars to a terminal, coloring each
+ * char with the average color of the image region it stands for.
+ *
+ * <p>Colors are written as 24-bit or 256-color ANSI escape codes. Consecutive chars
+ * with the same quantized color share a single escape sequence, which keeps the number
+ * of bytes sent to the terminal low at high resolutions.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class AnsiAsciiOutput implements AsciiOutput {
+
+    /** Escape sequence that resets all terminal attributes. */
+    private static final String RESET = "\033[0m";
+
+    /** Separator printed after every char, matching the console layout. */
+    private static final char CELL_SEPARATOR = ' ';
+
+    /** Mask dropping the low bits of each channel, so near-identical colors form one run. */
+    private static final int TRUE_COLOR_MASK = 0xF8F8F8;
+
+    /** Index of the first entry of the 6x6x6 color cube in the 256-color palette. */
+    private static final int CUBE_OFFSET = 16;
+
+    /** Index of the first entry of the grayscale ramp in the 256-color palette. */
+    private static final int GRAY_OFFSET = 232;
+
+    /** Number of entries in the grayscale ramp of the 256-color palette. */
+    private static final int GRAY_LEVELS = 24;
+
+    /** Whether to write 24-bit colors rather than 256-color palette indices. */
+    private final boolean trueColor;
+
+    /** Output used when no colors are available. */
+    private final ConsoleAsciiOutput plainOutput;
+
+    /** The stream of the console to write to, or null for stdout. */
+    private final PrintStream console;
+
+    /** Reusable buffer holding the frame being built. */
+    private final StringBuilder frameBuilder;
+
+    /** Reusable buffer the frame is copied into before it is written. */
+    private char[] frameBuffer;
+
+    /**
+     * Constructs a new AnsiAsciiOutput.
+     *
+     * @param trueColor true to write 24-bit colors, false to write 256-color palette indices.
+     */
+    public AnsiAsciiOutput(boolean trueColor) {
+        this(trueColor, null);
+    }
+
+    /**
+     * Constructs a new AnsiAsciiOutput writing to the stream of a console.
+     *
+     * @param trueColor true to write 24-bit colors, false to write 256-color palette indices.
+     * @param console the stream of the console to write to, or null for stdout.
+     */
+    public AnsiAsciiOutput(boolean trueColor, PrintStream console) {
+        this.trueColor = trueColor;
+        this.console = console;
+        this.plainOutput = new ConsoleAsciiOutput(true, console);
+        this.frameBuilder = new StringBuilder();
+        this.frameBuffer = new char[0];
+    }
+
+    /**
+     * Checks whether the current terminal advertises 24-bit color support.
+     *
+     * @return true if the COLORTERM environment variable indicates 24-bit color.
+     */
+    public static boolean isTrueColorTerminal() {
+        String colorTerm = System.getenv("COLORTERM");
+        return colorTerm != null && (colorTerm.contains("truecolor") || colorTerm.contains("24bit"));
+    }
+
+    /**
+     * Outputs the chars without color, since none is available.
+     *
+     * @param chars the chars to output.
+     */
+    @Override
+    public void out(char[][] chars) {
+        plainOutput.out(chars);
+    }
+
+    /**
+     * Outputs the chars, each colored by its average color.
+     *
+     * @param chars the chars to output.
+     * @param colors the average colors of the chars, packed as 0xRRGGBB.
+     */
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        out(CharGrid.of(chars), colors);
+    }
+
+    /**
+     * Outputs the grid, each char colored by its average color, or without color if none
+     * is available.
+     *
+     * @param chars the chars to output.
+     * @param colors the average colors of the chars, packed as 0xRRGGBB, or null.
+     */
+    @Override
+    public void out(CharGrid chars, int[][] colors) {
+        if (colors == null) {
+            plainOutput.out(chars, null);
+            return;
+        }
+        frameBuilder.setLength(0);
+        char[] cells = chars.getChars();
+        for (int y = 0; y < chars.getHeight(); y++) {
+            int rowStart = chars.rowOffset(y);
+            int prevColor = -1;
+            for (int x = 0; x < chars.getWidth(); x++) {
+                int color = quantize(colors[y][x]);
+                if (color != prevColor) {
+                    appendEscape(color);
+                    prevColor = color;
+                }
+                frameBuilder.append(cells[rowStart + x]).append(CELL_SEPARATOR);
+            }
+            // Reset at the end of each line so the color never leaks into the shell prompt
+            frameBuilder.append(RESET).append(System.lineSeparator());
+        }
+        int length = frameBuilder.length();
+        if (frameBuffer.length < length) {
+            frameBuffer = new char[length];
+        }
+        frameBuilder.getChars(0, length, frameBuffer, 0);
+        ConsoleAsciiOutput.writeToConsole(console, frameBuffer, length);
+    }
+
+    /**
+     * Quantizes a color to the value its escape sequence is built from.
+     *
+     * @param rgb the color, packed as 0xRRGGBB.
+     * @return the masked color in 24-bit mode, or the palette index in 256-color mode.
+     */
+    private int quantize(int rgb) {
+        if (trueColor) {
+            return rgb & TRUE_COLOR_MASK;
+        }
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        if (red == green && green == blue) {
+            return grayIndex(red);
+        }
+        return CUBE_OFFSET + 36 * cubeLevel(red) + 6 * cubeLevel(green) + cubeLevel(blue);
+    }
+
+    /**
+     * Maps a channel value to its level (0-5) in the 6x6x6 color cube.
+     *
+     * @param channel the channel value (0-255).
+     * @return the cube level.
+     */
+    private static int cubeLevel(int channel) {
+        return (channel * 5 + 127) / 255;
+    }
+
+    /**
+     * Maps a gray value to its entry in the 256-color palette.
+     *
+     * @param gray the gray value (0-255).
+     * @return the palette index.
+     */
+    private static int grayIndex(int gray) {
+        if (gray < 8) {
+            return CUBE_OFFSET;
+        }
+        if (gray > 238) {
+            return CUBE_OFFSET + 215;
+        }
+        return GRAY_OFFSET + Math.min(GRAY_LEVELS - 1, (gray - 8) / 10);
+    }
+
+    /**
+     * Appends the escape sequence selecting a quantized foreground color.
+     *
+     * @param color the quantized color.
+     */
+    private void appendEscape(int color) {
+        if (trueColor) {
+            frameBuilder.append("\033[38;2;")
+                    .append((color >> 16) & 0xFF).append(';')
+                    .append((color >> 8) & 0xFF).append(';')
+                    .append(color & 0xFF).append('m');
+        } else {
+            frameBuilder.append("\033[38;5;").append(color).append('m');
+        }
+    }
+}
@@ -10,4 +10,31 @@ public interface AsciiOutput {
      * Output the specified 2D array of chars
      */
     void out(char[][] chars);
+
+    /**
+     * Output the specified 2D array of chars, where colors[y][x] is the average color
+     * (packed as 0xRRGGBB) of the image region chars[y][x] stands for.
+     * Outputs that do not use color ignore it.
+     */
+    default void out(char[][] chars, int[][] colors) {
+        out(chars);
+    }
+
+    /**
+     * Output the specified grid of chars, where colors[y][x] is the average color
+     * (packed as 0xRRGGBB) of the image region of the char at row y and column x, or null.
+     * Outputs that read whole rows override it; others are handed a copy in the array
+     * per row layout.
+     */
+    default void out(CharGrid chars, int[][] colors) {
+        out(chars.toArray(), colors);
+    }
+
+    /**
+     * Describe the render the next output comes from: the charset it was matched against,
+     * the name of the rounding strategy and the sub-image brightnesses.
+     * Outputs that do not record it ignore it.
+     */
+    default void describeRender(char[] charset, String roundStrategy, double[][] brightnesses) {
+    }
 }
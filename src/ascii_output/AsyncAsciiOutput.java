@@ -0,0 +1,208 @@
+package ascii_output;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The AsyncAsciiOutput class decorates an {@link AsciiOutput} so that outputs are written
+ * by a dedicated writer thread, and the caller does not wait for them.
+ *
+ * <p>Renders are handed over as they are, so they must not be modified after being output,
+ * which holds for the grids produced by the ASCII art algorithm. If a new render is output
+ * before the writer started on the previous one, the previous one is superseded and never
+ * written.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class AsyncAsciiOutput implements AsciiOutput, AutoCloseable {
+
+    /** Name of the writer thread. */
+    private static final String WRITER_THREAD_NAME = "ascii-output-writer";
+
+    /** The output the writes are delegated to. */
+    private final AsciiOutput delegate;
+
+    /** The single writer thread. */
+    private final ExecutorService writer;
+
+    /** The latest write not yet taken by the writer thread, or null if there is none. */
+    private final AtomicReference<PendingWrite> pending;
+
+    /** The last render description, attached to the next write. */
+    private volatile RenderDescription description;
+
+    /**
+     * A render waiting to be written, together with its description and completion future.
+     */
+    private static class PendingWrite {
+
+        /** The chars to output. */
+        private final CharGrid chars;
+
+        /** The colors of the chars, or null. */
+        private final int[][] colors;
+
+        /** The description of the render, or null if none was given. */
+        private final RenderDescription description;
+
+        /** Completed with true once written, or with false if superseded. */
+        private final CompletableFuture<Boolean> future;
+
+        /**
+         * Constructs a new pending write.
+         *
+         * @param chars the chars to output.
+         * @param colors the colors of the chars, or null.
+         * @param description the description of the render, or null.
+         */
+        private PendingWrite(CharGrid chars, int[][] colors, RenderDescription description) {
+            this.chars = chars;
+            this.colors = colors;
+            this.description = description;
+            this.future = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * The arguments of {@link AsciiOutput#describeRender}.
+     */
+    private static class RenderDescription {
+
+        /** The charset the chars were matched against. */
+        private final char[] charset;
+
+        /** The name of the rounding strategy. */
+        private final String roundStrategy;
+
+        /** The sub-image brightnesses. */
+        private final double[][] brightnesses;
+
+        /**
+         * Constructs a new render description.
+         *
+         * @param charset the charset the chars were matched against.
+         * @param roundStrategy the name of the rounding strategy.
+         * @param brightnesses the sub-image brightnesses.
+         */
+        private RenderDescription(char[] charset, String roundStrategy, double[][] brightnesses) {
+            this.charset = charset;
+            this.roundStrategy = roundStrategy;
+            this.brightnesses = brightnesses;
+        }
+    }
+
+    /**
+     * Constructs a new AsyncAsciiOutput around the given output.
+     *
+     * @param delegate the output the writes are delegated to.
+     */
+    public AsyncAsciiOutput(AsciiOutput delegate) {
+        this.delegate = delegate;
+        this.pending = new AtomicReference<>();
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, WRITER_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Records the description of the next render.
+     *
+     * @param charset the charset the chars were matched against.
+     * @param roundStrategy the name of the rounding strategy.
+     * @param brightnesses the sub-image brightnesses.
+     */
+    @Override
+    public void describeRender(char[] charset, String roundStrategy, double[][] brightnesses) {
+        this.description = new RenderDescription(charset, roundStrategy, brightnesses);
+    }
+
+    /**
+     * Hands the chars to the writer thread without waiting for them to be written.
+     *
+     * @param chars the chars to output.
+     */
+    @Override
+    public void out(char[][] chars) {
+        submit(CharGrid.of(chars), null);
+    }
+
+    /**
+     * Hands the chars and their colors to the writer thread without waiting for them
+     * to be written.
+     *
+     * @param chars the chars to output.
+     * @param colors the colors of the chars, packed as 0xRRGGBB.
+     */
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        submit(CharGrid.of(chars), colors);
+    }
+
+    /**
+     * Hands the grid and its colors to the writer thread without waiting for them to be
+     * written.
+     *
+     * @param chars the chars to output.
+     * @param colors the colors of the chars, packed as 0xRRGGBB, or null.
+     */
+    @Override
+    public void out(CharGrid chars, int[][] colors) {
+        submit(chars, colors);
+    }
+
+    /**
+     * Hands a render to the writer thread, superseding any render it did not start on yet.
+     *
+     * @param chars the chars to output.
+     * @param colors the colors of the chars, or null.
+     * @return a future completed with true once the render is written, with false if it
+     *         is superseded, or exceptionally if writing it fails.
+     */
+    public CompletableFuture<Boolean> submit(CharGrid chars, int[][] colors) {
+        PendingWrite write = new PendingWrite(chars, colors, description);
+        PendingWrite superseded = pending.getAndSet(write);
+        if (superseded != null) {
+            superseded.future.complete(false);
+        }
+        writer.execute(this::writePending);
+        return write.future;
+    }
+
+    /**
+     * Writes the latest pending render, if an earlier run did not already take it.
+     */
+    private void writePending() {
+        PendingWrite write = pending.getAndSet(null);
+        if (write == null) {
+            return;
+        }
+        try {
+            if (write.description != null) {
+                delegate.describeRender(write.description.charset, write.description.roundStrategy,
+                        write.description.brightnesses);
+            }
+            delegate.out(write.chars, write.colors);
+            write.future.complete(true);
+        } catch (RuntimeException e) {
+            write.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Waits for the pending render to be written and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
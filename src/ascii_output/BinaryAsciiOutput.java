@@ -0,0 +1,235 @@
+package ascii_output;
+
+import constants.Constants;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * The BinaryAsciiOutput class writes a 2D array of chars to a compact binary archive
+ * that can be reloaded without the source image.
+ *
+ * <p>The archive is big-endian and laid out as follows:</p>
+ * <pre>
+ *   int     magic ("ASCA")
+ *   byte    version
+ *   byte    flags (bit 0: brightness grid stored, bit 1: average colors stored)
+ *   int     rows, int columns
+ *   short   charset size, followed by the charset chars
+ *   UTF     rounding strategy name
+ *   short   glyph table size, followed by the distinct chars of the grid
+ *   runs    (byte glyph index, varint run length) in row-major order, until rows*columns cells
+ *   double  rows*columns sub-image brightnesses, if flagged
+ *   int     rows*columns sub-image average colors (0xRRGGBB), if flagged
+ * </pre>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class BinaryAsciiOutput implements AsciiOutput {
+
+    /** Size of the buffer the archive is written through. */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    /** The archive file name. */
+    private final String filename;
+
+    /** Whether to store the sub-image brightness grid. */
+    private final boolean storeBrightness;
+
+    /** The charset of the render being output, or an empty charset if not described. */
+    private char[] charset;
+
+    /** The rounding strategy of the render being output, or an empty name if not described. */
+    private String roundStrategy;
+
+    /** The brightness grid of the render being output, or null if not described. */
+    private double[][] brightnesses;
+
+    /**
+     * Constructs a new BinaryAsciiOutput.
+     *
+     * @param filename the archive file name.
+     * @param storeBrightness whether to store the sub-image brightness grid and average
+     *                        colors, allowing the archive to warm the render cache.
+     */
+    public BinaryAsciiOutput(String filename, boolean storeBrightness) {
+        this.filename = filename;
+        this.storeBrightness = storeBrightness;
+        this.charset = new char[0];
+        this.roundStrategy = "";
+    }
+
+    /**
+     * Records the render metadata written to the archive header.
+     *
+     * @param charset the charset the chars were matched against.
+     * @param roundStrategy the name of the rounding strategy.
+     * @param brightnesses the sub-image brightnesses.
+     */
+    @Override
+    public void describeRender(char[] charset, String roundStrategy, double[][] brightnesses) {
+        this.charset = charset;
+        this.roundStrategy = roundStrategy;
+        this.brightnesses = brightnesses;
+    }
+
+    /**
+     * Writes the chars to the archive.
+     *
+     * @param chars the chars to output.
+     */
+    @Override
+    public void out(char[][] chars) {
+        write(chars, null);
+    }
+
+    /**
+     * Writes the chars to the archive, with the average colors if the brightness grid is
+     * stored.
+     *
+     * @param chars the chars to output.
+     * @param colors the average colors of the sub-images, or null.
+     */
+    @Override
+    public void out(CharGrid chars, int[][] colors) {
+        write(chars.toArray(), colors);
+    }
+
+    /**
+     * Writes the chars, and the brightness grid and average colors if stored, to the archive.
+     *
+     * @param chars the chars to output.
+     * @param colors the average colors of the sub-images, or null.
+     */
+    private void write(char[][] chars, int[][] colors) {
+        try (DataOutputStream stream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename), WRITE_BUFFER_SIZE))) {
+            boolean withBrightness = storeBrightness && brightnesses != null
+                    && brightnesses.length == chars.length && brightnesses[0].length == chars[0].length;
+            boolean withColors = withBrightness && colors != null
+                    && colors.length == chars.length && colors[0].length == chars[0].length;
+            stream.writeInt(Constants.ARCHIVE_MAGIC);
+            stream.writeByte(Constants.ARCHIVE_VERSION);
+            stream.writeByte((withBrightness ? Constants.ARCHIVE_FLAG_BRIGHTNESS : 0)
+                    | (withColors ? Constants.ARCHIVE_FLAG_COLORS : 0));
+            stream.writeInt(chars.length);
+            stream.writeInt(chars[0].length);
+            writeChars(stream, charset);
+            stream.writeUTF(roundStrategy);
+
+            char[] glyphs = distinctChars(chars);
+            writeChars(stream, glyphs);
+            writeRuns(stream, chars, glyphs);
+
+            if (withBrightness) {
+                for (double[] row : brightnesses) {
+                    for (double brightness : row) {
+                        stream.writeDouble(brightness);
+                    }
+                }
+            }
+            if (withColors) {
+                for (int[] row : colors) {
+                    for (int color : row) {
+                        stream.writeInt(color);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * Writes a length-prefixed array of chars.
+     *
+     * @param stream the stream to write to.
+     * @param chars the chars to write.
+     * @throws IOException if writing fails.
+     */
+    private static void writeChars(DataOutputStream stream, char[] chars) throws IOException {
+        stream.writeShort(chars.length);
+        for (char c : chars) {
+            stream.writeChar(c);
+        }
+    }
+
+    /**
+     * Collects the distinct chars of the grid in ascending order.
+     *
+     * @param chars the grid.
+     * @return the distinct chars.
+     */
+    private static char[] distinctChars(char[][] chars) {
+        boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+        int count = 0;
+        for (char[] row : chars) {
+            for (char c : row) {
+                if (!seen[c]) {
+                    seen[c] = true;
+                    count++;
+                }
+            }
+        }
+        char[] glyphs = new char[count];
+        int i = 0;
+        for (int c = 0; i < count; c++) {
+            if (seen[c]) {
+                glyphs[i++] = (char) c;
+            }
+        }
+        return glyphs;
+    }
+
+    /**
+     * Writes the grid as runs of equal glyph indices, which may span row boundaries.
+     *
+     * @param stream the stream to write to.
+     * @param chars the grid.
+     * @param glyphs the glyph table, in ascending order.
+     * @throws IOException if writing fails.
+     */
+    private static void writeRuns(DataOutputStream stream, char[][] chars, char[] glyphs)
+            throws IOException {
+        int runGlyph = -1;
+        int runLength = 0;
+        for (char[] row : chars) {
+            for (char c : row) {
+                int glyph = Arrays.binarySearch(glyphs, c);
+                if (glyph == runGlyph) {
+                    runLength++;
+                    continue;
+                }
+                if (runLength > 0) {
+                    writeRun(stream, runGlyph, runLength);
+                }
+                runGlyph = glyph;
+                runLength = 1;
+            }
+        }
+        if (runLength > 0) {
+            writeRun(stream, runGlyph, runLength);
+        }
+    }
+
+    /**
+     * Writes a single run as a glyph index followed by its length as an unsigned varint.
+     *
+     * @param stream the stream to write to.
+     * @param glyph the glyph index.
+     * @param length the run length.
+     * @throws IOException if writing fails.
+     */
+    private static void writeRun(DataOutputStream stream, int glyph, int length) throws IOException {
+        stream.writeByte(glyph);
+        while ((length & ~0x7F) != 0) {
+            stream.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        stream.writeByte(length);
+    }
+}
@@ -0,0 +1,171 @@
+package ascii_output;
+
+/**
+ * The CharGrid class holds the chars of a render in a single row-major array, rather than
+ * in an array per row.
+ *
+ * <p>Row {@code y} starts at offset {@code y * getStride()} of {@link #getChars()} and holds
+ * {@link #getWidth()} chars, so a whole row can be copied or written with a single bulk call,
+ * and a whole grid is copied with one. Renders are allocated once, whatever their height.
+ * {@link #of(char[][])} and {@link #toArray()} adapt grids to and from the array-per-row
+ * layout of {@link AsciiOutput#out(char[][])}.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public final class CharGrid {
+
+    /** The chars, row after row. */
+    private final char[] chars;
+
+    /** The number of chars per row. */
+    private final int width;
+
+    /** The number of rows. */
+    private final int height;
+
+    /** The offset between the starts of consecutive rows. */
+    private final int stride;
+
+    /**
+     * Constructs a grid of null chars.
+     *
+     * @param width the number of chars per row.
+     * @param height the number of rows.
+     */
+    public CharGrid(int width, int height) {
+        this(new char[width * height], width, height, width);
+    }
+
+    /**
+     * Constructs a grid over an array of chars, which is not copied.
+     *
+     * @param chars the chars, row after row.
+     * @param width the number of chars per row.
+     * @param height the number of rows.
+     * @param stride the offset between the starts of consecutive rows, at least the width.
+     * @throws IllegalArgumentException if the array is too short for the dimensions.
+     */
+    public CharGrid(char[] chars, int width, int height, int stride) {
+        if (width <= 0 || height <= 0 || stride < width
+                || (long) (height - 1) * stride + width > chars.length) {
+            throw new IllegalArgumentException("Invalid char grid dimensions");
+        }
+        this.chars = chars;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+    }
+
+    /**
+     * Copies the chars of an array per row into a new grid.
+     *
+     * @param rows the chars, one array per row, all of the same length.
+     * @return the grid.
+     */
+    public static CharGrid of(char[][] rows) {
+        CharGrid grid = new CharGrid(rows[0].length, rows.length);
+        for (int y = 0; y < rows.length; y++) {
+            System.arraycopy(rows[y], 0, grid.chars, y * grid.stride, grid.width);
+        }
+        return grid;
+    }
+
+    /**
+     * Gets the number of chars per row.
+     *
+     * @return the width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the offset between the starts of consecutive rows in {@link #getChars()}.
+     *
+     * @return the stride.
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Gets the array holding the chars, to be read (or written while the grid is filled)
+     * row by row in bulk.
+     *
+     * @return the backing array.
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * Gets the offset of the first char of a row in {@link #getChars()}.
+     *
+     * @param y the row, from 0.
+     * @return the offset.
+     */
+    public int rowOffset(int y) {
+        return y * stride;
+    }
+
+    /**
+     * Gets a char.
+     *
+     * @param y the row, from 0.
+     * @param x the column, from 0.
+     * @return the char.
+     */
+    public char get(int y, int x) {
+        return chars[y * stride + x];
+    }
+
+    /**
+     * Sets a char.
+     *
+     * @param y the row, from 0.
+     * @param x the column, from 0.
+     * @param c the char.
+     */
+    public void set(int y, int x, char c) {
+        chars[y * stride + x] = c;
+    }
+
+    /**
+     * Copies the grid into a new grid without gaps between rows.
+     *
+     * @return the copy.
+     */
+    public CharGrid copy() {
+        CharGrid copy = new CharGrid(width, height);
+        if (stride == width) {
+            System.arraycopy(chars, 0, copy.chars, 0, width * height);
+        } else {
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(chars, y * stride, copy.chars, y * width, width);
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the grid into an array per row, for outputs reading that layout.
+     *
+     * @return the chars, one array per row.
+     */
+    public char[][] toArray() {
+        char[][] rows = new char[height][width];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(chars, y * stride, rows[y], 0, width);
+        }
+        return rows;
+    }
+}
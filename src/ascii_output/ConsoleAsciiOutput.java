@@ -1,16 +1,112 @@
 package ascii_output;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
 /**
  * Output a 2D array of chars to the console.
+ * The whole frame is built in a reusable buffer and written to System.out in a single call.
  * @author Dan Nirel
- */public class ConsoleAsciiOutput implements AsciiOutput{
+ */
+public class ConsoleAsciiOutput implements AsciiOutput {
+    private static final char CELL_SEPARATOR = ' ';
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+
+    private final boolean separateCells;
+    private final PrintStream console;
+    private char[] frameBuffer = new char[0];
+
+    public ConsoleAsciiOutput() {
+        this(true);
+    }
+
+    /**
+     * @param separateCells whether to print a space after every char, as the default layout does.
+     */
+    public ConsoleAsciiOutput(boolean separateCells) {
+        this(separateCells, null);
+    }
+
+    /**
+     * @param separateCells whether to print a space after every char, as the default layout does.
+     * @param console the stream of the console to write to, or null for stdout.
+     */
+    public ConsoleAsciiOutput(boolean separateCells, PrintStream console) {
+        this.separateCells = separateCells;
+        this.console = console;
+    }
+
     @Override
     public void out(char[][] chars) {
-        for (int y = 0; y < chars.length ; y++) {
-            for (int x = 0; x < chars[y].length; x++) {
-                System.out.print(chars[y][x] + " ");
+        out(CharGrid.of(chars), null);
+    }
+
+    /**
+     * Outputs the grid, copying every row into the frame in bulk in the compact layout.
+     */
+    @Override
+    public void out(CharGrid chars, int[][] colors) {
+        int length = fillFrameBuffer(chars);
+        writeToConsole(console, frameBuffer, length);
+    }
+
+    /**
+     * Writes the chars, in the console layout, to the given writer instead of stdout.
+     */
+    public void writeTo(char[][] chars, Writer writer) throws IOException {
+        writeTo(CharGrid.of(chars), writer);
+    }
+
+    /**
+     * Writes the grid, in the console layout, to the given writer instead of stdout.
+     */
+    public void writeTo(CharGrid chars, Writer writer) throws IOException {
+        int length = fillFrameBuffer(chars);
+        writer.write(frameBuffer, 0, length);
+    }
+
+    /**
+     * Writes the first length chars of frame to the stream of a console in a single call,
+     * or to System.out (as currently set) if the stream is null. A frame filling its whole
+     * array is written without copying it into a String.
+     */
+    static void writeToConsole(PrintStream console, char[] frame, int length) {
+        PrintStream stream = console != null ? console : System.out;
+        if (length == frame.length) {
+            stream.print(frame);
+        } else {
+            stream.append(CharBuffer.wrap(frame, 0, length));
+        }
+        stream.flush();
+    }
+
+    private int fillFrameBuffer(CharGrid chars) {
+        int cellWidth = separateCells ? 2 : 1;
+        int width = chars.getWidth();
+        int frameLength = chars.getHeight() * (width * cellWidth + LINE_SEPARATOR.length);
+        if (frameBuffer.length != frameLength) {
+            // Sized exactly, so the frame is written as a whole array
+            frameBuffer = new char[frameLength];
+        }
+
+        char[] cells = chars.getChars();
+        int pos = 0;
+        for (int y = 0; y < chars.getHeight(); y++) {
+            int rowStart = chars.rowOffset(y);
+            if (separateCells) {
+                for (int x = rowStart; x < rowStart + width; x++) {
+                    frameBuffer[pos++] = cells[x];
+                    frameBuffer[pos++] = CELL_SEPARATOR;
+                }
+            } else {
+                System.arraycopy(cells, rowStart, frameBuffer, pos, width);
+                pos += width;
             }
-            System.out.println();
+            System.arraycopy(LINE_SEPARATOR, 0, frameBuffer, pos, LINE_SEPARATOR.length);
+            pos += LINE_SEPARATOR.length;
         }
+        return pos;
     }
 }
@@ -0,0 +1,187 @@
+package ascii_output;
+
+import java.io.PrintStream;
+
+/**
+ * The DiffConsoleAsciiOutput class outputs a 2D array of chars to a terminal, redrawing
+ * only the chars that changed since the previous frame it drew.
+ *
+ * <p>The first frame, and any frame whose dimensions differ from the previous one, clears
+ * the screen and is drawn in full at its top-left corner. Later frames move the cursor to
+ * each run of changed chars with ANSI cursor-addressing sequences. After every frame the
+ * cursor is left on the line below it and the rest of the screen is cleared. The layout
+ * matches {@link ConsoleAsciiOutput}.</p>
+ *
+ * <p>Cursor addressing is only right while the frame sits unwrapped at the top of the
+ * screen, so a frame is only redrawn in part if the {@link TerminalSize} is known, its rows
+ * fit the width of the terminal, and it leaves room below it for the prompt, the command and
+ * a message, which would otherwise scroll the screen. Any other frame is drawn in full, as
+ * is every frame written to a stream other than stdout, whose terminal is unknown.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class DiffConsoleAsciiOutput implements AsciiOutput {
+
+    /** Escape sequence that clears the screen and moves the cursor to its top-left corner. */
+    private static final String CLEAR_SCREEN = "\033[2J\033[H";
+
+    /** Escape sequence that clears the screen from the cursor to its end. */
+    private static final String CLEAR_BELOW = "\033[J";
+
+    /** Separator printed after every char, matching the console layout. */
+    private static final char CELL_SEPARATOR = ' ';
+
+    /** Number of screen columns every char takes, including its separator. */
+    private static final int CELL_WIDTH = 2;
+
+    /** Longest gap of unchanged cells rewritten rather than skipped with a cursor move. */
+    private static final int MAX_BRIDGED_GAP = 3;
+
+    /** Rows kept free below a frame redrawn in part, for what is printed between frames. */
+    private static final int FREE_ROWS_BELOW = 4;
+
+    /** The stream of the console to write to, or null for stdout. */
+    private final PrintStream console;
+
+    /** Reusable buffer holding the frame being built. */
+    private final StringBuilder frameBuilder;
+
+    /** Reusable buffer the frame is copied into before it is written. */
+    private char[] frameBuffer;
+
+    /** Copy of the last frame drawn, or null if none was drawn yet. */
+    private CharGrid lastFrame;
+
+    /**
+     * Constructs a new DiffConsoleAsciiOutput.
+     */
+    public DiffConsoleAsciiOutput() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new DiffConsoleAsciiOutput writing to the stream of a console.
+     *
+     * @param console the stream of the console to write to, or null for stdout.
+     */
+    public DiffConsoleAsciiOutput(PrintStream console) {
+        this.console = console;
+        this.frameBuilder = new StringBuilder();
+        this.frameBuffer = new char[0];
+    }
+
+    /**
+     * Draws the chars, redrawing only what changed since the previous frame.
+     *
+     * @param chars the chars to output.
+     */
+    @Override
+    public void out(char[][] chars) {
+        out(CharGrid.of(chars), null);
+    }
+
+    /**
+     * Draws the grid, redrawing only what changed since the previous frame.
+     *
+     * @param chars the chars to output.
+     * @param colors ignored.
+     */
+    @Override
+    public void out(CharGrid chars, int[][] colors) {
+        frameBuilder.setLength(0);
+        if (lastFrame == null || lastFrame.getHeight() != chars.getHeight()
+                || lastFrame.getWidth() != chars.getWidth() || !fitsTerminal(chars)) {
+            // The cursor is left below the frame by its last line separator
+            appendFullFrame(chars);
+        } else {
+            appendChangedCells(chars);
+            // Leave the cursor below the frame, discarding prompts printed since the last frame
+            appendCursorMove(chars.getHeight(), 0);
+        }
+        frameBuilder.append(CLEAR_BELOW);
+
+        int length = frameBuilder.length();
+        if (frameBuffer.length < length) {
+            frameBuffer = new char[length];
+        }
+        frameBuilder.getChars(0, length, frameBuffer, 0);
+        ConsoleAsciiOutput.writeToConsole(console, frameBuffer, length);
+    }
+
+    /**
+     * Checks if a frame can be redrawn in part: it is drawn to stdout, on a terminal whose
+     * size is known, wide enough for its rows and tall enough to keep room below it.
+     *
+     * @param chars the chars to draw.
+     * @return true if the frame fits the terminal, false otherwise.
+     */
+    private boolean fitsTerminal(CharGrid chars) {
+        if (console != null) {
+            return false;
+        }
+        TerminalSize terminal = TerminalSize.query();
+        return terminal != null && chars.getWidth() * CELL_WIDTH < terminal.getColumns()
+                && chars.getHeight() + FREE_ROWS_BELOW <= terminal.getRows();
+    }
+
+    /**
+     * Clears the screen, draws the whole frame and remembers it.
+     *
+     * @param chars the chars to draw.
+     */
+    private void appendFullFrame(CharGrid chars) {
+        frameBuilder.append(CLEAR_SCREEN);
+        char[] cells = chars.getChars();
+        for (int y = 0; y < chars.getHeight(); y++) {
+            int rowStart = chars.rowOffset(y);
+            for (int x = rowStart; x < rowStart + chars.getWidth(); x++) {
+                frameBuilder.append(cells[x]).append(CELL_SEPARATOR);
+            }
+            frameBuilder.append(System.lineSeparator());
+        }
+        lastFrame = chars.copy();
+    }
+
+    /**
+     * Draws every run of chars that differ from the last frame, and updates it.
+     *
+     * @param chars the chars to draw.
+     */
+    private void appendChangedCells(CharGrid chars) {
+        char[] cells = chars.getChars();
+        char[] lastCells = lastFrame.getChars();
+        for (int y = 0; y < chars.getHeight(); y++) {
+            int rowStart = chars.rowOffset(y);
+            int lastRowStart = lastFrame.rowOffset(y);
+            int cursorX = -1;
+            for (int x = 0; x < chars.getWidth(); x++) {
+                char c = cells[rowStart + x];
+                if (c == lastCells[lastRowStart + x]) {
+                    continue;
+                }
+                // Rewriting a short gap of unchanged chars is cheaper than moving the cursor
+                if (cursorX >= 0 && x - cursorX <= MAX_BRIDGED_GAP) {
+                    for (int gapX = cursorX; gapX < x; gapX++) {
+                        frameBuilder.append(lastCells[lastRowStart + gapX]).append(CELL_SEPARATOR);
+                    }
+                } else {
+                    appendCursorMove(y, x);
+                }
+                frameBuilder.append(c).append(CELL_SEPARATOR);
+                lastCells[lastRowStart + x] = c;
+                cursorX = x + 1;
+            }
+        }
+    }
+
+    /**
+     * Appends the escape sequence moving the cursor to the screen position of a cell.
+     *
+     * @param row the row of the cell, from 0.
+     * @param column the column of the cell, from 0.
+     */
+    private void appendCursorMove(int row, int column) {
+        frameBuilder.append("\033[").append(row + 1).append(';')
+                .append(column * CELL_WIDTH + 1).append('H');
+    }
+}
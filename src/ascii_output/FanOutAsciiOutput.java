@@ -0,0 +1,74 @@
+package ascii_output;
+
+import java.util.List;
+
+/**
+ * The FanOutAsciiOutput class outputs every render to several outputs, so one rendered
+ * grid can be shown on the console and saved to files at once.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class FanOutAsciiOutput implements AsciiOutput {
+
+    /** The outputs every render is written to, in order. */
+    private final List<AsciiOutput> outputs;
+
+    /**
+     * Constructs a new FanOutAsciiOutput.
+     *
+     * @param outputs the outputs every render is written to, in order.
+     */
+    public FanOutAsciiOutput(List<AsciiOutput> outputs) {
+        this.outputs = List.copyOf(outputs);
+    }
+
+    /**
+     * Forwards the description of the next render to every output.
+     *
+     * @param charset the charset the chars were matched against.
+     * @param roundStrategy the name of the rounding strategy.
+     * @param brightnesses the sub-image brightnesses.
+     */
+    @Override
+    public void describeRender(char[] charset, String roundStrategy, double[][] brightnesses) {
+        for (AsciiOutput output : outputs) {
+            output.describeRender(charset, roundStrategy, brightnesses);
+        }
+    }
+
+    /**
+     * Outputs the chars to every output.
+     *
+     * @param chars the chars to output.
+     */
+    @Override
+    public void out(char[][] chars) {
+        out(chars, null);
+    }
+
+    /**
+     * Outputs the chars and their colors to every output.
+     *
+     * @param chars the chars to output.
+     * @param colors the colors of the chars, packed as 0xRRGGBB.
+     */
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        for (AsciiOutput output : outputs) {
+            output.out(chars, colors);
+        }
+    }
+
+    /**
+     * Outputs the grid and its colors to every output.
+     *
+     * @param chars the chars to output.
+     * @param colors the colors of the chars, packed as 0xRRGGBB, or null.
+     */
+    @Override
+    public void out(CharGrid chars, int[][] colors) {
+        for (AsciiOutput output : outputs) {
+            output.out(chars, colors);
+        }
+    }
+}
@@ -1,63 +1,219 @@
 package ascii_output;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Output a 2D array of chars to an HTML file viewable in a web browser.
+ * The file is written as UTF-8, optionally gzip-compressed while it is streamed.
+ * In colored mode, runs of chars sharing a palette color are wrapped in one span per run.
  * @author Dan Nirel
  */
 public class HtmlAsciiOutput implements AsciiOutput {
     private static final double BASE_LINE_SPACING = 0.8;
     private static final double BASE_FONT_SIZE = 150.0;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_ESCAPE_LENGTH = "&amp;".length();
+    private static final int MAX_PALETTE_SIZE = 32;
+    private static final char[] SPAN_OPEN = "<span class=c".toCharArray();
+    private static final char[] SPAN_OPEN_END = ">".toCharArray();
+    private static final char[] SPAN_CLOSE = "</span>".toCharArray();
+
+    /** HTML representation of every ASCII char, computed once instead of per cell. */
+    private static final char[][] ESCAPES = new char[128][];
+    static {
+        for (char c = 0; c < ESCAPES.length; c++) {
+            ESCAPES[c] = new char[]{c};
+        }
+        ESCAPES['<'] = "&lt;".toCharArray();
+        ESCAPES['>'] = "&gt;".toCharArray();
+        ESCAPES['&'] = "&amp;".toCharArray();
+    }
 
     private final String fontName;
     private final String filename;
+    private final boolean compress;
+    private final boolean colored;
+    private char[] rowBuffer = new char[0];
 
     public HtmlAsciiOutput(String filename, String fontName) {
+        this(filename, fontName, false, false);
+    }
+
+    public HtmlAsciiOutput(String filename, String fontName, boolean compress) {
+        this(filename, fontName, compress, false);
+    }
+
+    /**
+     * @param compress whether to gzip the file as it is written (conventionally named *.html.gz).
+     * @param colored whether to color chars by the average color of their image region.
+     */
+    public HtmlAsciiOutput(String filename, String fontName, boolean compress, boolean colored) {
         this.fontName = fontName;
         this.filename = filename;
+        this.compress = compress;
+        this.colored = colored;
     }
 
     @Override
     public void out(char[][] chars) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(String.format(
-                "<!DOCTYPE html>\n"+
-                "<html>\n"+
-                "<body style=\""+
-                    "\tCOLOR:#000000;"+
-                    "\tTEXT-ALIGN:center;"+
-                    "\tFONT-SIZE:1px;\">\n"+
-                "<p style=\""+
-                    "\twhite-space:pre;"+
-                    "\tFONT-FAMILY:%s;"+
-                    "\tFONT-SIZE:%frem;"+
-                    "\tLETTER-SPACING:0.15em;"+
-                    "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
-
-            for(int y = 0 ; y < chars.length ; y++) {
-                for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
-                }
-                writer.newLine();
-            }
-            writer.write(
-                "</p>\n"+
-                "</body>\n"+
-                "</html>\n");
+        out(chars, null);
+    }
+
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        out(CharGrid.of(chars), colors);
+    }
+
+    @Override
+    public void out(CharGrid chars, int[][] colors) {
+        try(Writer writer = openWriter()) {
+            writeTo(chars, colors, writer);
         } catch(IOException e) {
             Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
         }
     }
+
+    /**
+     * Writes the HTML document to the given writer instead of the file.
+     */
+    public void writeTo(char[][] chars, int[][] colors, Writer writer) throws IOException {
+        writeTo(CharGrid.of(chars), colors, writer);
+    }
+
+    /**
+     * Writes the HTML document of a grid to the given writer instead of the file,
+     * escaping every row into a buffer written in a single call.
+     */
+    public void writeTo(CharGrid chars, int[][] colors, Writer writer) throws IOException {
+        PaletteQuantizer palette = (colored && colors != null)
+                ? new PaletteQuantizer(colors, MAX_PALETTE_SIZE) : null;
+        writer.write(String.format(
+            "<!DOCTYPE html>\n"+
+            "<html>\n"+
+            "<head><meta charset=\"UTF-8\">%s</head>\n"+
+            "<body style=\""+
+                "\tCOLOR:#000000;"+
+                "\tTEXT-ALIGN:center;"+
+                "\tFONT-SIZE:1px;\">\n"+
+            "<p style=\""+
+                "\twhite-space:pre;"+
+                "\tFONT-FAMILY:%s;"+
+                "\tFONT-SIZE:%frem;"+
+                "\tLETTER-SPACING:0.15em;"+
+                "\tLINE-HEIGHT:%fem;\">\n",
+                palette == null ? "" : styleSheet(palette),
+                fontName, BASE_FONT_SIZE/chars.getWidth(), BASE_LINE_SPACING));
+
+        for (int y = 0; y < chars.getHeight(); y++) {
+            int length = palette == null
+                    ? escapeRow(chars.getChars(), chars.rowOffset(y), chars.getWidth())
+                    : escapeColoredRow(chars.getChars(), chars.rowOffset(y), chars.getWidth(),
+                            colors[y], palette);
+            writer.write(rowBuffer, 0, length);
+        }
+        writer.write(
+            "</p>\n"+
+            "</body>\n"+
+            "</html>\n");
+    }
+
+    private Writer openWriter() throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream stream = Channels.newOutputStream(channel);
+        if (compress) {
+            stream = new GZIPOutputStream(stream, WRITE_BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+    }
+
+    /**
+     * One CSS class per palette color, named c followed by the palette index in base 36.
+     */
+    private static String styleSheet(PaletteQuantizer palette) {
+        StringBuilder style = new StringBuilder("<style>");
+        for (int i = 0; i < palette.size(); i++) {
+            style.append(String.format(".c%s{color:#%06x}", Integer.toString(i, Character.MAX_RADIX),
+                    palette.getColor(i)));
+        }
+        return style.append("</style>").toString();
+    }
+
+    /**
+     * Escapes a row, the width chars of cells from rowStart, into the row buffer,
+     * followed by a newline.
+     * @return the number of chars written to the buffer.
+     */
+    private int escapeRow(char[] cells, int rowStart, int width) {
+        ensureRowBuffer(width * MAX_ESCAPE_LENGTH + 1);
+        int pos = 0;
+        for (int x = rowStart; x < rowStart + width; x++) {
+            pos = appendEscaped(cells[x], pos);
+        }
+        rowBuffer[pos++] = '\n';
+        return pos;
+    }
+
+    /**
+     * Escapes a row, the width chars of cells from rowStart, into the row buffer, wrapping
+     * every run of chars with the same palette color in a single span, followed by a newline.
+     * @return the number of chars written to the buffer.
+     */
+    private int escapeColoredRow(char[] cells, int rowStart, int width, int[] colors, PaletteQuantizer palette) {
+        int maxSpanLength = SPAN_OPEN.length + 2 + SPAN_OPEN_END.length + SPAN_CLOSE.length;
+        ensureRowBuffer(width * (MAX_ESCAPE_LENGTH + maxSpanLength) + 1);
+        int pos = 0;
+        int prevIndex = -1;
+        for (int x = 0; x < width; x++) {
+            int index = palette.indexOf(colors[x]);
+            if (index != prevIndex) {
+                if (prevIndex >= 0) {
+                    pos = appendChars(SPAN_CLOSE, pos);
+                }
+                pos = appendChars(SPAN_OPEN, pos);
+                if (index >= Character.MAX_RADIX) {
+                    rowBuffer[pos++] = Character.forDigit(index / Character.MAX_RADIX, Character.MAX_RADIX);
+                }
+                rowBuffer[pos++] = Character.forDigit(index % Character.MAX_RADIX, Character.MAX_RADIX);
+                pos = appendChars(SPAN_OPEN_END, pos);
+                prevIndex = index;
+            }
+            pos = appendEscaped(cells[rowStart + x], pos);
+        }
+        if (prevIndex >= 0) {
+            pos = appendChars(SPAN_CLOSE, pos);
+        }
+        rowBuffer[pos++] = '\n';
+        return pos;
+    }
+
+    private void ensureRowBuffer(int required) {
+        if (rowBuffer.length < required) {
+            rowBuffer = new char[required];
+        }
+    }
+
+    private int appendEscaped(char c, int pos) {
+        if (c < ESCAPES.length) {
+            return appendChars(ESCAPES[c], pos);
+        }
+        rowBuffer[pos] = c;
+        return pos + 1;
+    }
+
+    private int appendChars(char[] chars, int pos) {
+        System.arraycopy(chars, 0, rowBuffer, pos, chars.length);
+        return pos + chars.length;
+    }
 }
@@ -0,0 +1,68 @@
+package ascii_output;
+
+import image_char_matching.GlyphAtlas;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * The ImageAsciiOutput class renders a 2D array of chars back to a raster image file,
+ * such as PNG or JPEG.
+ *
+ * <p>Every char is drawn by copying its tile from a cached {@link GlyphAtlas} straight
+ * into the pixel array backing the image, rather than drawing text for every char.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class ImageAsciiOutput implements AsciiOutput {
+
+    /** The image file name. */
+    private final String filename;
+
+    /** The image format name, as known to {@link ImageIO} (e.g., "png" or "jpeg"). */
+    private final String format;
+
+    /** The atlas chars are drawn from. */
+    private final GlyphAtlas atlas;
+
+    /**
+     * Constructs a new ImageAsciiOutput.
+     *
+     * @param filename the image file name.
+     * @param format the image format name, as known to {@link ImageIO} (e.g., "png" or "jpeg").
+     * @param fontName the name of the font chars are drawn in.
+     * @param cellSize the side length of every char in the image, in pixels.
+     */
+    public ImageAsciiOutput(String filename, String format, String fontName, int cellSize) {
+        this.filename = filename;
+        this.format = format;
+        this.atlas = GlyphAtlas.getAtlas(fontName, cellSize);
+    }
+
+    /**
+     * Renders the chars to the image file.
+     *
+     * @param chars the chars to output.
+     */
+    @Override
+    public void out(char[][] chars) {
+        int cellSize = atlas.getTileSize();
+        int width = chars[0].length * cellSize;
+        BufferedImage image = new BufferedImage(width, chars.length * cellSize, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < chars.length; y++) {
+            for (int x = 0; x < chars[y].length; x++) {
+                atlas.blit(chars[y][x], pixels, y * cellSize * width + x * cellSize, width);
+            }
+        }
+        try {
+            ImageIO.write(image, format, new File(filename));
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+}
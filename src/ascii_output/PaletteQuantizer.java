@@ -0,0 +1,141 @@
+package ascii_output;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The PaletteQuantizer class reduces the colors of a rendered image to a bounded palette.
+ *
+ * <p>Colors are first grouped into bins of 4 bits per channel. The most populated bins
+ * become the palette (a popularity quantizer), each represented by the average of the
+ * colors that fell into it. Every other color is mapped to its nearest palette entry,
+ * and that mapping is cached per bin.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class PaletteQuantizer {
+
+    /** Number of bits kept per channel when binning colors. */
+    private static final int BITS_PER_CHANNEL = 4;
+
+    /** Number of distinct bins. */
+    private static final int BIN_COUNT = 1 << (3 * BITS_PER_CHANNEL);
+
+    /** Palette colors, packed as 0xRRGGBB. */
+    private final int[] palette;
+
+    /** Palette index of every bin, or -1 if it was not computed yet. */
+    private final int[] binToIndex;
+
+    /**
+     * Constructs a palette for the given colors.
+     *
+     * @param colors the colors to quantize, packed as 0xRRGGBB.
+     * @param maxColors the maximal number of colors in the palette.
+     */
+    public PaletteQuantizer(int[][] colors, int maxColors) {
+        int[] counts = new int[BIN_COUNT];
+        long[] sumRed = new long[BIN_COUNT];
+        long[] sumGreen = new long[BIN_COUNT];
+        long[] sumBlue = new long[BIN_COUNT];
+        for (int[] row : colors) {
+            for (int rgb : row) {
+                int bin = binOf(rgb);
+                counts[bin]++;
+                sumRed[bin] += (rgb >> 16) & 0xFF;
+                sumGreen[bin] += (rgb >> 8) & 0xFF;
+                sumBlue[bin] += rgb & 0xFF;
+            }
+        }
+
+        List<Integer> usedBins = new ArrayList<>();
+        for (int bin = 0; bin < BIN_COUNT; bin++) {
+            if (counts[bin] > 0) {
+                usedBins.add(bin);
+            }
+        }
+        usedBins.sort((a, b) -> Integer.compare(counts[b], counts[a]));
+
+        binToIndex = new int[BIN_COUNT];
+        Arrays.fill(binToIndex, -1);
+        palette = new int[Math.min(maxColors, usedBins.size())];
+        for (int i = 0; i < palette.length; i++) {
+            int bin = usedBins.get(i);
+            int count = counts[bin];
+            palette[i] = (int) (sumRed[bin] / count) << 16
+                    | (int) (sumGreen[bin] / count) << 8
+                    | (int) (sumBlue[bin] / count);
+            binToIndex[bin] = i;
+        }
+    }
+
+    /**
+     * Gets the number of colors in the palette.
+     *
+     * @return the palette size.
+     */
+    public int size() {
+        return palette.length;
+    }
+
+    /**
+     * Gets a palette color.
+     *
+     * @param index the palette index.
+     * @return the color, packed as 0xRRGGBB.
+     */
+    public int getColor(int index) {
+        return palette[index];
+    }
+
+    /**
+     * Gets the index of the palette color representing the given color.
+     *
+     * @param rgb the color, packed as 0xRRGGBB.
+     * @return the palette index.
+     */
+    public int indexOf(int rgb) {
+        int bin = binOf(rgb);
+        if (binToIndex[bin] < 0) {
+            binToIndex[bin] = nearestIndex(rgb);
+        }
+        return binToIndex[bin];
+    }
+
+    /**
+     * Finds the palette color nearest to the given color by squared RGB distance.
+     *
+     * @param rgb the color, packed as 0xRRGGBB.
+     * @return the palette index.
+     */
+    private int nearestIndex(int rgb) {
+        int nearest = 0;
+        int minDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < palette.length; i++) {
+            int dRed = ((rgb >> 16) & 0xFF) - ((palette[i] >> 16) & 0xFF);
+            int dGreen = ((rgb >> 8) & 0xFF) - ((palette[i] >> 8) & 0xFF);
+            int dBlue = (rgb & 0xFF) - (palette[i] & 0xFF);
+            int distance = dRed * dRed + dGreen * dGreen + dBlue * dBlue;
+            if (distance < minDistance) {
+                minDistance = distance;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Gets the bin of a color.
+     *
+     * @param rgb the color, packed as 0xRRGGBB.
+     * @return the bin index.
+     */
+    private static int binOf(int rgb) {
+        int shift = 8 - BITS_PER_CHANNEL;
+        int red = ((rgb >> 16) & 0xFF) >> shift;
+        int green = ((rgb >> 8) & 0xFF) >> shift;
+        int blue = (rgb & 0xFF) >> shift;
+        return (red << (2 * BITS_PER_CHANNEL)) | (green << BITS_PER_CHANNEL) | blue;
+    }
+}
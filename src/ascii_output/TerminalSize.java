@@ -0,0 +1,124 @@
+package ascii_output;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The TerminalSize class holds the number of rows and columns of the terminal stdout is
+ * shown on.
+ *
+ * <p>The size is taken from the LINES and COLUMNS environment variables when the shell
+ * exports both, and is otherwise asked from the controlling terminal with {@code stty size}.
+ * Interactive shells such as bash and zsh usually do not export them, so the terminal is
+ * asked on every query, which follows resizes.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public final class TerminalSize {
+
+    /** Environment variable holding the number of rows of the terminal. */
+    private static final String LINES_VARIABLE = "LINES";
+
+    /** Environment variable holding the number of columns of the terminal. */
+    private static final String COLUMNS_VARIABLE = "COLUMNS";
+
+    /** The controlling terminal, which stty reads the size of. */
+    private static final File CONTROLLING_TERMINAL = new File("/dev/tty");
+
+    /** Longest wait for stty to report the size, in milliseconds. */
+    private static final long STTY_TIMEOUT_MILLIS = 1000;
+
+    /** The number of rows. */
+    private final int rows;
+
+    /** The number of columns. */
+    private final int columns;
+
+    /**
+     * Constructs a terminal size.
+     *
+     * @param rows the number of rows.
+     * @param columns the number of columns.
+     */
+    private TerminalSize(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Gets the number of rows of the terminal.
+     *
+     * @return the number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns of the terminal.
+     *
+     * @return the number of columns.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Queries the size of the terminal stdout is shown on.
+     *
+     * @return the size, or null if stdout is not a terminal or its size cannot be found.
+     */
+    public static TerminalSize query() {
+        TerminalSize size = parse(System.getenv(LINES_VARIABLE), System.getenv(COLUMNS_VARIABLE));
+        if (size != null || System.console() == null || !CONTROLLING_TERMINAL.exists()) {
+            return size;
+        }
+        try {
+            Process stty = new ProcessBuilder("stty", "size")
+                    .redirectInput(CONTROLLING_TERMINAL)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            String line;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(stty.getInputStream(), StandardCharsets.UTF_8))) {
+                line = reader.readLine();
+            }
+            if (!stty.waitFor(STTY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS) || stty.exitValue() != 0
+                    || line == null) {
+                stty.destroy();
+                return null;
+            }
+            String[] parts = line.strip().split("\\s+");
+            return parts.length == 2 ? parse(parts[0], parts[1]) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Parses a terminal size.
+     *
+     * @param rows the number of rows, or null.
+     * @param columns the number of columns, or null.
+     * @return the size, or null if either is missing or not a positive number.
+     */
+    private static TerminalSize parse(String rows, String columns) {
+        if (rows == null || columns == null) {
+            return null;
+        }
+        try {
+            int parsedRows = Integer.parseInt(rows.strip());
+            int parsedColumns = Integer.parseInt(columns.strip());
+            return parsedRows > 0 && parsedColumns > 0 ? new TerminalSize(parsedRows, parsedColumns) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
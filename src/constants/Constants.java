@@ -42,24 +42,254 @@ public class Constants {
     /** Error message for invalid image paths. */
     public static final String INVALID_IMAGE_PATH = "Did not execute due to a problem with the image path";
 
+    /** Error message for invalid batch script paths. */
+    public static final String INVALID_SCRIPT_PATH = "Did not execute due to a problem with the script path";
+
+    /** Command-line argument for reading a batch script from the standard input. */
+    public static final String BATCH_ARG = "--batch";
+
+    /** Prefix of comment lines in batch scripts. */
+    public static final String COMMENT_PREFIX = "#";
+
+    /** Format of the timing summary printed at the end of a batch run. */
+    public static final String BATCH_SUMMARY_FORMAT =
+            "Batch done: %d commands executed, %d coalesced, %d renders in %.3f ms, total %.3f ms";
+
+    /** Default port of the render server. */
+    public static final int DEFAULT_SERVER_PORT = 8080;
+
+    /** Message printed once the render server is listening, followed by its port. */
+    public static final String SERVER_STARTED_MESSAGE = "Render server listening on localhost port ";
+
+    /** Error message for render requests with a method other than POST. */
+    public static final String SERVER_POST_ONLY = "Did not render since renders must be requested with POST";
+
+    /** Error message for render requests beyond the number of renders in flight. */
+    public static final String SERVER_BUSY = "Did not render since too many renders are in progress";
+
+    /** Error message for render requests whose image is larger than the server accepts. */
+    public static final String SERVER_TOO_LARGE = "Did not render since the image file is too large";
+
+    /** Largest image file the render server accepts, in bytes. */
+    public static final int SERVER_MAX_BODY_BYTES = 32 << 20;
+
+    /** Default port of the shell daemon. */
+    public static final int DEFAULT_DAEMON_PORT = 8081;
+
+    /** Message printed once the shell daemon is listening, followed by its port. */
+    public static final String DAEMON_STARTED_MESSAGE = "Shell daemon listening on localhost port ";
+
+    /** Error message for connections to the shell daemon beyond the number of sessions. */
+    public static final String DAEMON_BUSY = "Did not start a session since too many sessions are in progress";
+
+    /** Format of the suffix of output file names of a daemon session, given its id. */
+    public static final String SESSION_FILE_SUFFIX_FORMAT = "-s%d";
+
+    /** Command for showing and controlling render metrics. */
+    public static final String STATS_INPUT = "stats";
+
+    /** Stats command argument for turning recording on. */
+    public static final String STATS_ON = "on";
+
+    /** Stats command argument for turning recording off. */
+    public static final String STATS_OFF = "off";
+
+    /** Stats command argument for clearing the recorded metrics. */
+    public static final String STATS_RESET = "reset";
+
+    /** Command description for the stats command. */
+    public static final String STATS_COMMAND = "change stats recording";
+
+    /** Message shown with the metrics while recording is off. */
+    public static final String STATS_DISABLED_MESSAGE = "Stats recording is off; turn it on with \"stats on\".";
+
     /** Command for changing rounding strategies. */
     public static final String ROUND_INPUT = "round ";
 
     /** Command for changing output method. */
     public static final String OUTPUT_INPUT = "output ";
 
+    /** Command for switching the input image. */
+    public static final String IMAGE_INPUT = "image ";
+
+    /** Command for warming the render cache from a binary archive of the input image. */
+    public static final String LOAD_INPUT = "load ";
+
+    /** Command for re-rendering the input image whenever its file changes. */
+    public static final String WATCH_INPUT = "watch";
+
+    /** Message shown when watching the input image starts. */
+    public static final String WATCH_MESSAGE = "Watching the image for changes; press Enter to stop.";
+
+    /** Name of the thread re-rendering a watched image. */
+    public static final String WATCH_THREAD_NAME = "image-watcher";
+
+    /** Quiet time that ends a burst of changes of a watched image, in milliseconds. */
+    public static final long WATCH_DEBOUNCE_MILLIS = 200;
+
+    /** Command for setting the time budget of progressive preview renders. */
+    public static final String PREVIEW_INPUT = "preview ";
+
+    /** Argument turning progressive preview renders off. */
+    public static final String PREVIEW_OFF = "off";
+
+    /** Command description for the preview command. */
+    public static final String PREVIEW_COMMAND = "change preview budget";
+
+    /** Name of the thread refining a preview into the exact render. */
+    public static final String REFINE_THREAD_NAME = "render-refiner";
+
+    /** Estimated number of pixels sampled per millisecond while previewing. */
+    public static final long PREVIEW_SAMPLES_PER_MILLI = 20_000;
+
+    /** Command for setting the deadline of renders. */
+    public static final String DEADLINE_INPUT = "deadline ";
+
+    /** Argument turning render deadlines off. */
+    public static final String DEADLINE_OFF = "off";
+
+    /** Command description for the deadline command. */
+    public static final String DEADLINE_COMMAND = "change render deadline";
+
+    /** Command cancelling the running render, entered while it runs. */
+    public static final String CANCEL_INPUT = "cancel";
+
+    /** Message shown when cancel is entered while no render runs. */
+    public static final String NOTHING_TO_CANCEL_MESSAGE = "There is no render to cancel.";
+
+    /** Message shown when a render is cancelled or runs past its deadline. */
+    public static final String RENDER_CANCELLED_MESSAGE = "Render stopped before it finished.";
+
+    /** Message shown before the best result available in place of a stopped render. */
+    public static final String BEST_AVAILABLE_MESSAGE = "Showing the best result available:";
+
+    /** Name of the thread running a cancellable render. */
+    public static final String RENDER_THREAD_NAME = "render";
+
+    /** Name of the thread reading the lines the user enters. */
+    public static final String INPUT_THREAD_NAME = "input-reader";
+
+    /** Interval at which a waiting shell checks for a cancel line, in milliseconds. */
+    public static final long CANCEL_POLL_MILLIS = 50;
+
+    /** Argument of the resolution command choosing the resolution automatically. */
+    public static final String RES_AUTO = "auto";
+
+    /** Environment variable holding the number of columns of the terminal. */
+    public static final String COLUMNS_VARIABLE = "COLUMNS";
+
+    /** Number of terminal columns assumed when the terminal does not report them. */
+    public static final int DEFAULT_TERMINAL_COLUMNS = 80;
+
+    /** Message displayed with the terminal width an automatic resolution is chosen for. */
+    public static final String TERMINAL_WIDTH_MESSAGE = "Terminal width: ";
+
+    /** Note following the terminal width when the terminal does not report it. */
+    public static final String DEFAULT_TERMINAL_WIDTH_NOTE =
+            " (not reported by the terminal; set it with \"res auto <columns>\")";
+
+    /** Terminal columns taken by every char of the ASCII art, followed by a space. */
+    public static final int COLUMNS_PER_CHAR = 2;
+
+    /** Latency budget of automatically chosen resolutions without a render deadline, in milliseconds. */
+    public static final long DEFAULT_AUTO_RES_BUDGET_MILLIS = 1000;
+
+    /** Estimated brightness grid time per padded pixel before any render, in nanoseconds. */
+    public static final double DEFAULT_NANOS_PER_PIXEL = 60;
+
+    /** Estimated char matching time per sub-image before any render, in nanoseconds. */
+    public static final double DEFAULT_NANOS_PER_SUB_IMAGE = 1000;
+
+    /** Fraction of the maximal heap the prepared images of a session may take. */
+    public static final double IMAGE_CACHE_HEAP_FRACTION = 0.25;
+
+    /** Estimated heap bytes per padded pixel of an image held in memory, while it is padded. */
+    public static final long IN_MEMORY_BYTES_PER_PIXEL = 48;
+
+    /** Fraction of the maximal heap an image may take to be held in memory rather than read in bands. */
+    public static final double IN_MEMORY_HEAP_FRACTION = 0.5;
+
+    /** Command-line argument keeping decoded images off the heap. */
+    public static final String OFF_HEAP_ARG = "--off-heap";
+
+    /** Directory of the raw pixel files of off-heap images, cached across runs. */
+    public static final String PIXEL_CACHE_DIRECTORY =
+            System.getProperty("java.io.tmpdir") + "/ascii_art/pixels";
+
+    /** Directory of the brightness grids of rendered images, cached across runs. */
+    public static final String BRIGHTNESS_CACHE_DIRECTORY =
+            System.getProperty("java.io.tmpdir") + "/ascii_art/brightness";
+
+    /** Largest total size of the brightness grids cached on disk, in bytes. */
+    public static final long BRIGHTNESS_CACHE_MAX_BYTES = 64L << 20;
+
+    /** Output type of the output the shell starts with. */
+    public static final String DEFAULT_OUTPUT_TYPE = "console";
+
     /** Font used in HTML output files. */
     public static final String HTML_FONT = "Courier New";
 
     /** Default name for the output HTML file. */
     public static final String OUTPUT_FILE_NAME = "out.html";
 
+    /** Default name for the gzip-compressed output HTML file. */
+    public static final String OUTPUT_GZ_FILE_NAME = "out.html.gz";
+
+    /** Default name for the binary ASCII art archive file. */
+    public static final String OUTPUT_ARCHIVE_FILE_NAME = "out.asca";
+
+    /** Default name for the PNG output image file. */
+    public static final String OUTPUT_PNG_FILE_NAME = "out.png";
+
+    /** Default name for the JPEG output image file. */
+    public static final String OUTPUT_JPEG_FILE_NAME = "out.jpeg";
+
+    /** Side length, in pixels, of every char in output image files. */
+    public static final int IMAGE_OUTPUT_CELL_SIZE = 8;
+
+    /** Magic number identifying binary ASCII art archives ("ASCA"). */
+    public static final int ARCHIVE_MAGIC = 0x41534341;
+
+    /** Version of the binary ASCII art archive format. */
+    public static final byte ARCHIVE_VERSION = 1;
+
+    /** Archive flag set when the sub-image brightness grid is stored. */
+    public static final byte ARCHIVE_FLAG_BRIGHTNESS = 1;
+
+    /** Archive flag set when the sub-image average colors are stored. */
+    public static final byte ARCHIVE_FLAG_COLORS = 2;
+
+    /** Error message for files that are not valid binary ASCII art archives. */
+    public static final String INVALID_ARCHIVE = "Did not load due to an invalid archive file";
+
+    /** Error message for archives that cannot warm the render cache of the current image. */
+    public static final String ARCHIVE_MISMATCH =
+            "Did not load since the archive does not store a brightness grid of the image";
+
+    /** Default rounding strategy for character matching. */
+    public static final String DEFAULT_ROUND_STRATEGY = "abs";
+
+    /** Separator between output types written to at once (e.g., "console+html"). */
+    public static final String OUTPUT_SEPARATOR = "+";
+
+    /** Output command argument for writing outputs on a background thread. */
+    public static final String ASYNC_ARG = "async";
+
     /** Command description for changing output method. */
     public static final String OUTPUT_COMMAND = "change output method";
 
     /** Command for generating ASCII art. */
     public static final String ASCII_ART_INPUT = "asciiArt ";
 
+    /** Command description for rendering several resolutions. */
+    public static final String MULTI_RES_COMMAND = "render several resolutions";
+
+    /** Format of the header printed before the render of each of several resolutions. */
+    public static final String MULTI_RES_HEADER_FORMAT = "Resolution %d:";
+
+    /** Format of the suffix of the output file names of each of several resolutions. */
+    public static final String MULTI_RES_FILE_SUFFIX_FORMAT = "-%d";
+
     /** Command argument for space character. */
     public static final String SPACE_ARG = "space";
 
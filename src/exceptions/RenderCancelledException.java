@@ -0,0 +1,23 @@
+package exceptions;
+
+import constants.Constants;
+
+/**
+ * The RenderCancelledException class represents an exception that is thrown
+ * when a render stops early because it was cancelled or ran past its deadline.
+ *
+ * <p>This exception is a runtime exception; the state of the previous render
+ * is left unchanged when it is thrown.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class RenderCancelledException extends RuntimeException {
+
+    /**
+     * Constructs a new RenderCancelledException with a default message.
+     * The message is retrieved from the Constants class.
+     */
+    public RenderCancelledException() {
+        super(Constants.RENDER_CANCELLED_MESSAGE);
+    }
+}
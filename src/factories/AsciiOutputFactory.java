@@ -1,10 +1,20 @@
 package factories;
 
+import ascii_output.AnsiAsciiOutput;
 import ascii_output.AsciiOutput;
+import ascii_output.BinaryAsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
+import ascii_output.DiffConsoleAsciiOutput;
+import ascii_output.FanOutAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
+import ascii_output.ImageAsciiOutput;
 import constants.Constants;
 
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 /**
  * The AsciiOutputFactory class is responsible for creating instances of
  * {@link AsciiOutput} based on the specified output type.
@@ -17,22 +27,118 @@ import constants.Constants;
  */
 public class AsciiOutputFactory {
 
+    /** The suffix inserted into the names of output files, before their extensions. */
+    private final String fileNameSuffix;
+
+    /** The stream the console outputs write to, or null for stdout. */
+    private final PrintStream console;
+
+    /**
+     * Constructs a factory of outputs writing to the default file names.
+     */
+    public AsciiOutputFactory() {
+        this("");
+    }
+
+    /**
+     * Constructs a factory of outputs writing to the default file names with a suffix
+     * inserted before their extensions (e.g., "out-64.html" for the suffix "-64"), so that
+     * outputs of several renders do not overwrite each other.
+     *
+     * @param fileNameSuffix the suffix of the file names.
+     */
+    public AsciiOutputFactory(String fileNameSuffix) {
+        this(fileNameSuffix, null);
+    }
+
+    /**
+     * Constructs a factory of outputs writing to the default file names with a suffix, and
+     * to the console of a shell session other than the process's own.
+     *
+     * @param fileNameSuffix the suffix of the file names.
+     * @param console the stream of the console, or null for stdout.
+     */
+    public AsciiOutputFactory(String fileNameSuffix, PrintStream console) {
+        this.fileNameSuffix = fileNameSuffix;
+        this.console = console;
+    }
+
     /**
      * Builds an {@link AsciiOutput} instance based on the provided output type.
      *
-     * @param outputType the type of output desired (e.g., "html" or "console").
+     * @param outputType the type of output desired (e.g., "html", "htmlGz", "htmlColor", "console",
+     *                   "consoleCompact" for console output without spaces between chars,
+     *                   "consoleDiff" for console output redrawing only changed chars,
+     *                   "ansi" for colored console output, "png"/"jpeg" for an image file,
+     *                   or "binary"/"binaryCached" for a reloadable binary archive
+     *                   without/with the brightness grid).
+     *                   Several types joined by "+" (e.g., "console+html") build an output
+     *                   writing every render to each of them.
      * @return an {@link AsciiOutput} instance for the specified output type.
      * @throws IllegalArgumentException if the output type is not supported.
      */
     public AsciiOutput buildAsciiOutput(String outputType) {
+        if (outputType.contains(Constants.OUTPUT_SEPARATOR)) {
+            List<AsciiOutput> outputs = new ArrayList<>();
+            for (String singleType : outputType.split(Pattern.quote(Constants.OUTPUT_SEPARATOR))) {
+                outputs.add(buildSingleAsciiOutput(singleType));
+            }
+            return new FanOutAsciiOutput(outputs);
+        }
+        return buildSingleAsciiOutput(outputType);
+    }
+
+    /**
+     * Builds an {@link AsciiOutput} instance for a single output type.
+     *
+     * @param outputType the type of output desired.
+     * @return an {@link AsciiOutput} instance for the specified output type.
+     * @throws IllegalArgumentException if the output type is not supported.
+     */
+    private AsciiOutput buildSingleAsciiOutput(String outputType) {
         switch (outputType) {
             case "html":
-                return new HtmlAsciiOutput(Constants.OUTPUT_FILE_NAME, Constants.HTML_FONT);
+                return new HtmlAsciiOutput(fileName(Constants.OUTPUT_FILE_NAME), Constants.HTML_FONT);
+            case "htmlGz":
+                return new HtmlAsciiOutput(fileName(Constants.OUTPUT_GZ_FILE_NAME), Constants.HTML_FONT, true);
+            case "htmlColor":
+                return new HtmlAsciiOutput(fileName(Constants.OUTPUT_FILE_NAME), Constants.HTML_FONT,
+                        false, true);
             case "console":
-                return new ConsoleAsciiOutput();
+                return new ConsoleAsciiOutput(true, console);
+            case "consoleCompact":
+                return new ConsoleAsciiOutput(false, console);
+            case "consoleDiff":
+                return new DiffConsoleAsciiOutput(console);
+            case "binary":
+                return new BinaryAsciiOutput(fileName(Constants.OUTPUT_ARCHIVE_FILE_NAME), false);
+            case "binaryCached":
+                return new BinaryAsciiOutput(fileName(Constants.OUTPUT_ARCHIVE_FILE_NAME), true);
+            case "png":
+                return new ImageAsciiOutput(fileName(Constants.OUTPUT_PNG_FILE_NAME), "png",
+                        Constants.HTML_FONT, Constants.IMAGE_OUTPUT_CELL_SIZE);
+            case "jpeg":
+                return new ImageAsciiOutput(fileName(Constants.OUTPUT_JPEG_FILE_NAME), "jpeg",
+                        Constants.HTML_FONT, Constants.IMAGE_OUTPUT_CELL_SIZE);
+            case "ansi":
+                return new AnsiAsciiOutput(AnsiAsciiOutput.isTrueColorTerminal(), console);
             default:
                 throw new IllegalArgumentException(Constants.incorrectFormatMessage
                         (Constants.OUTPUT_COMMAND));
         }
     }
+
+    /**
+     * Inserts the suffix of the factory into a file name, before its extension.
+     *
+     * @param fileName the default file name.
+     * @return the file name with the suffix.
+     */
+    private String fileName(String fileName) {
+        int extensionStart = fileName.indexOf('.');
+        if (extensionStart < 0) {
+            return fileName + fileNameSuffix;
+        }
+        return fileName.substring(0, extensionStart) + fileNameSuffix + fileName.substring(extensionStart);
+    }
 }
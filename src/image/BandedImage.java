@@ -0,0 +1,179 @@
+package image;
+
+import constants.Constants;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * The BandedImage class reads the rows of an image file without ever holding the whole
+ * image in memory, for images too large to decode at once.
+ *
+ * <p>The file is read in horizontal bands of rows through {@link ImageReader} source
+ * regions, and every band is discarded once its rows are read. Memory is thus bounded by
+ * one band plus the sums of the brightness grid.</p>
+ *
+ * <p>Formats that cannot decode a region without the rows above it (such as JPEG) decode
+ * those rows again for every band, trading time for memory.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class BandedImage extends RowSourceImage {
+
+    /** Maximal number of pixels in a band. */
+    private static final int BAND_PIXELS = 1 << 22;
+
+    /** The image file. */
+    private final File file;
+
+    /**
+     * A read of the rows of the file, band by band.
+     */
+    private final class BandReader implements RowReader {
+
+        /** The stream rows are read from. */
+        private final ImageInputStream stream;
+
+        /** The reader rows are read with, or null if the stream is not readable. */
+        private ImageReader reader;
+
+        /** The band holding the last row read, or null. */
+        private BufferedImage band;
+
+        /** The first row of the band. */
+        private int bandStart;
+
+        /**
+         * Opens the file for reading bands.
+         *
+         * @throws IOException if the file is not a readable image.
+         */
+        private BandReader() throws IOException {
+            stream = ImageIO.createImageInputStream(file);
+            try {
+                reader = createReader(stream);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * Reads a row, decoding the band that starts with it if it is past the current band.
+         *
+         * @param y the row, from 0.
+         * @param destination the array to store the RGB values of the row in.
+         * @param offset the index in destination of the first pixel of the row.
+         * @throws IOException if the band cannot be decoded.
+         */
+        @Override
+        public void readRow(int y, int[] destination, int offset) throws IOException {
+            if (band == null || y >= bandStart + band.getHeight()) {
+                // Drop the previous band before decoding the next one
+                band = null;
+                bandStart = y;
+                ImageReadParam param = reader.getDefaultReadParam();
+                int bandHeight = Math.min(Math.max(1, BAND_PIXELS / width), height - y);
+                param.setSourceRegion(new Rectangle(0, y, width, bandHeight));
+                band = reader.read(0, param);
+            }
+            band.getRGB(0, y - bandStart, width, 1, destination, offset, width);
+        }
+
+        /**
+         * Drops the current band and closes the file.
+         */
+        @Override
+        public void close() {
+            band = null;
+            if (reader != null) {
+                reader.dispose();
+                reader = null;
+            }
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                    // Nothing was written, so nothing is lost
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens an image file, reading only its dimensions.
+     *
+     * @param filename the path to the image file.
+     * @throws IOException if the file is not a readable image.
+     */
+    public BandedImage(String filename) throws IOException {
+        this(new File(filename), readDimensions(new File(filename)));
+    }
+
+    /**
+     * Constructs an image of a file with known dimensions.
+     *
+     * @param file the image file.
+     * @param dimensions the width and height of the image.
+     */
+    private BandedImage(File file, int[] dimensions) {
+        super(dimensions[0], dimensions[1]);
+        this.file = file;
+    }
+
+    /**
+     * Reads the dimensions of an image file.
+     *
+     * @param file the image file.
+     * @return the width and height of the image.
+     * @throws IOException if the file is not a readable image.
+     */
+    private static int[] readDimensions(File file) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = createReader(stream);
+            try {
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Creates a reader of an image stream.
+     *
+     * @param stream the image stream, or null if the file could not be opened.
+     * @return a reader with the stream as its input.
+     * @throws IOException if no reader can read the stream.
+     */
+    private static ImageReader createReader(ImageInputStream stream) throws IOException {
+        if (stream == null) {
+            throw new IOException(Constants.INVALID_IMAGE_PATH);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            throw new IOException(Constants.INVALID_IMAGE_PATH);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(stream);
+        return reader;
+    }
+
+    /**
+     * Opens the file for a read of its rows, band by band.
+     *
+     * @return the reader of the rows.
+     * @throws IOException if the file is not a readable image.
+     */
+    @Override
+    protected RowReader openRows() throws IOException {
+        return new BandReader();
+    }
+}
@@ -0,0 +1,179 @@
+package image;
+
+import constants.Constants;
+
+/**
+ * The CellSums class holds the sums of the grey values and color channels of the pixels
+ * of every cell of a padded image split at a resolution, from which the brightness and
+ * average color of every cell follow.
+ *
+ * <p>Sums are what make a single pass over the pixels serve several resolutions: every
+ * cell of half the resolution covers exactly two by two cells of this one, so its sums are
+ * the sums of theirs, and the pixels need not be read again. Within a cell, pixels are
+ * summed row by row, exactly like {@link ImageEditor#calculateBrightness(Image, int[], int)}
+ * sums a sub-image, so the brightnesses of the resolution they were summed at are identical
+ * to the sub-image ones.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class CellSums {
+
+    /** The side length of every cell, in pixels. */
+    private final int cellSize;
+
+    /** The grey sums of the cells. */
+    private final double[][] sumGrey;
+
+    /** The red sums of the cells. */
+    private final long[][] sumRed;
+
+    /** The green sums of the cells. */
+    private final long[][] sumGreen;
+
+    /** The blue sums of the cells. */
+    private final long[][] sumBlue;
+
+    /**
+     * Constructs zero sums of a grid of cells.
+     *
+     * @param cellSize the side length of every cell, in pixels.
+     * @param rows the number of rows of cells.
+     * @param columns the number of cells per row.
+     */
+    CellSums(int cellSize, int rows, int columns) {
+        this.cellSize = cellSize;
+        this.sumGrey = new double[rows][columns];
+        this.sumRed = new long[rows][columns];
+        this.sumGreen = new long[rows][columns];
+        this.sumBlue = new long[rows][columns];
+    }
+
+    /**
+     * Sums the cells of an image held in memory, reading every pixel once.
+     *
+     * @param image the image, padded to power-of-two dimensions.
+     * @param resolution the number of cells per row.
+     * @return the sums.
+     */
+    public static CellSums of(Image image, int resolution) {
+        int cellSize = image.getWidth() / resolution;
+        CellSums sums = new CellSums(cellSize, image.getHeight() / cellSize, image.getWidth() / cellSize);
+        int[] rowPixels = new int[image.getWidth()];
+        for (int y = 0; y < sums.getRows() * cellSize; y++) {
+            for (int x = 0; x < rowPixels.length; x++) {
+                rowPixels[x] = image.getPixel(y, x).getRGB();
+            }
+            sums.addRow(y, rowPixels);
+        }
+        return sums;
+    }
+
+    /**
+     * Gets the side length of every cell.
+     *
+     * @return the side length in pixels.
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Gets the number of rows of cells.
+     *
+     * @return the number of rows.
+     */
+    public int getRows() {
+        return sumGrey.length;
+    }
+
+    /**
+     * Gets the number of cells per row.
+     *
+     * @return the number of cells per row.
+     */
+    public int getColumns() {
+        return sumGrey[0].length;
+    }
+
+    /**
+     * Adds a row of the padded image to the sums of the cells it crosses.
+     *
+     * @param y the row, from 0.
+     * @param rowPixels the RGB values of the row.
+     */
+    void addRow(int y, int[] rowPixels) {
+        int cellRow = y / cellSize;
+        double[] grey = sumGrey[cellRow];
+        long[] red = sumRed[cellRow];
+        long[] green = sumGreen[cellRow];
+        long[] blue = sumBlue[cellRow];
+        for (int cell = 0; cell < grey.length; cell++) {
+            double cellGrey = grey[cell];
+            long cellRed = red[cell];
+            long cellGreen = green[cell];
+            long cellBlue = blue[cell];
+            for (int x = cell * cellSize; x < (cell + 1) * cellSize; x++) {
+                int pixelRed = rowPixels[x] >> 16 & 0xFF;
+                int pixelGreen = rowPixels[x] >> 8 & 0xFF;
+                int pixelBlue = rowPixels[x] & 0xFF;
+                cellGrey += ImageEditor.calculateGreyPixel(pixelRed, pixelGreen, pixelBlue);
+                cellRed += pixelRed;
+                cellGreen += pixelGreen;
+                cellBlue += pixelBlue;
+            }
+            grey[cell] = cellGrey;
+            red[cell] = cellRed;
+            green[cell] = cellGreen;
+            blue[cell] = cellBlue;
+        }
+    }
+
+    /**
+     * Sums the cells of half the resolution, every one covering two by two cells of this
+     * one. The grey sums may differ from summing the pixels directly by floating-point
+     * rounding.
+     *
+     * @return the sums of half the resolution.
+     * @throws IllegalStateException if there is a single row of cells.
+     */
+    public CellSums coarsen() {
+        if (getRows() < 2) {
+            throw new IllegalStateException("Cannot coarsen a single row of cells");
+        }
+        CellSums coarse = new CellSums(cellSize * 2, getRows() / 2, getColumns() / 2);
+        for (int i = 0; i < coarse.getRows(); i++) {
+            for (int j = 0; j < coarse.getColumns(); j++) {
+                coarse.sumGrey[i][j] = sumGrey[2 * i][2 * j] + sumGrey[2 * i][2 * j + 1]
+                        + sumGrey[2 * i + 1][2 * j] + sumGrey[2 * i + 1][2 * j + 1];
+                coarse.sumRed[i][j] = sumRed[2 * i][2 * j] + sumRed[2 * i][2 * j + 1]
+                        + sumRed[2 * i + 1][2 * j] + sumRed[2 * i + 1][2 * j + 1];
+                coarse.sumGreen[i][j] = sumGreen[2 * i][2 * j] + sumGreen[2 * i][2 * j + 1]
+                        + sumGreen[2 * i + 1][2 * j] + sumGreen[2 * i + 1][2 * j + 1];
+                coarse.sumBlue[i][j] = sumBlue[2 * i][2 * j] + sumBlue[2 * i][2 * j + 1]
+                        + sumBlue[2 * i + 1][2 * j] + sumBlue[2 * i + 1][2 * j + 1];
+            }
+        }
+        return coarse;
+    }
+
+    /**
+     * Calculates the brightness and average color of every cell.
+     *
+     * @param colors the array to fill with the average colors, packed as 0xRRGGBB, of
+     *               {@link #getRows} rows of {@link #getColumns} cells.
+     * @return the brightness of every cell (normalized between 0 and 1).
+     */
+    public double[][] toBrightnesses(int[][] colors) {
+        int pixelCount = cellSize * cellSize;
+        double[][] brightnesses = new double[getRows()][getColumns()];
+        for (int i = 0; i < getRows(); i++) {
+            for (int j = 0; j < getColumns(); j++) {
+                colors[i][j] = (int) (sumRed[i][j] / pixelCount) << 16
+                        | (int) (sumGreen[i][j] / pixelCount) << 8
+                        | (int) (sumBlue[i][j] / pixelCount);
+                brightnesses[i][j] = (sumGrey[i][j] / pixelCount) / Constants.MAX_RGB_VAL;
+            }
+        }
+        return brightnesses;
+    }
+}
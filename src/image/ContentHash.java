@@ -0,0 +1,75 @@
+package image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The ContentHash class computes the hashes image files are cached by, so the same
+ * content is recognized under any name.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class ContentHash {
+
+    /** Private constructor, since the class only has static members. */
+    private ContentHash() {
+    }
+
+    /**
+     * Hashes the content of a file.
+     *
+     * @param file the file.
+     * @return the SHA-256 hash of the content, in hexadecimal.
+     * @throws IOException if the file cannot be read.
+     */
+    public static String of(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream stream = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            stream.transferTo(OutputStream.nullOutputStream());
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hashes content held in memory.
+     *
+     * @param content the content.
+     * @return the SHA-256 hash of the content, in hexadecimal.
+     */
+    public static String of(byte[] content) {
+        return toHex(newDigest().digest(content));
+    }
+
+    /**
+     * Creates a SHA-256 digest.
+     *
+     * @return the digest.
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Formats a hash in hexadecimal.
+     *
+     * @param hash the hash.
+     * @return the hash, in hexadecimal.
+     */
+    private static String toHex(byte[] hash) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
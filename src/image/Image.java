@@ -28,7 +28,15 @@ public class Image {
      * @throws IOException if an error occurs while reading the file.
      */
     public Image(String filename) throws IOException {
-        BufferedImage im = ImageIO.read(new File(filename));
+        this(ImageIO.read(new File(filename)));
+    }
+
+    /**
+     * Constructs an Image object from already decoded image data.
+     *
+     * @param im the decoded image.
+     */
+    public Image(BufferedImage im) {
         width = im.getWidth();
         height = im.getHeight();
 
@@ -3,6 +3,7 @@ package image;
 import constants.Constants;
 
 import java.awt.*;
+import java.util.Arrays;
 
 /**
  * The ImageEditor class provides utility methods for manipulating and processing
@@ -16,6 +17,12 @@ import java.awt.*;
  */
 public class ImageEditor {
 
+    /** Initial value of a cell checksum (the 64-bit FNV-1a offset basis). */
+    private static final long CHECKSUM_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /** Multiplier of a cell checksum per pixel (the 64-bit FNV-1a prime). */
+    private static final long CHECKSUM_PRIME = 0x100000001b3L;
+
     /**
      * Pads an image to ensure its dimensions are powers of two.
      * The padding is filled with white pixels.
@@ -25,7 +32,7 @@ public class ImageEditor {
      */
     public static Image padImage(Image image) {
         Color[][] pixelArray = buildPaddedColorArray(image);
-        return new Image(pixelArray, pixelArray.length, pixelArray[0].length);
+        return new Image(pixelArray, pixelArray[0].length, pixelArray.length);
     }
 
     /**
@@ -34,7 +41,7 @@ public class ImageEditor {
      * @param oldDimension the original dimension.
      * @return the new dimension as a power of two.
      */
-    private static int findNewDimension(int oldDimension) {
+    static int findNewDimension(int oldDimension) {
         int newDimension = 1;
         while (newDimension < oldDimension) {
             newDimension *= 2;
@@ -123,7 +130,7 @@ public class ImageEditor {
      * @param imageCol the column index of the sub-image in the grid.
      * @return a new Image object representing the sub-image.
      */
-    private static Image createSubImage(Image image, int subImageDimension, int imageRow, int imageCol) {
+    public static Image createSubImage(Image image, int subImageDimension, int imageRow, int imageCol) {
         Color[][] pixelArray = new Color[subImageDimension][subImageDimension];
         int rowParam = imageRow * subImageDimension;
         int colParam = imageCol * subImageDimension;
@@ -135,6 +142,80 @@ public class ImageEditor {
         return new Image(pixelArray, subImageDimension, subImageDimension);
     }
 
+    /**
+     * Calculates a checksum of the pixels of every sub-image of an image split at a
+     * resolution, laid out like {@link #createSubImages}. Sub-images with equal checksums
+     * have equal pixels, but for a negligible chance of collision, so comparing checksums
+     * finds the sub-images an edit changed.
+     *
+     * @param image the input image, padded to power-of-two dimensions.
+     * @param resolution the number of sub-images per row.
+     * @return the checksum of every sub-image.
+     */
+    public static long[][] calculateSubImageChecksums(Image image, int resolution) {
+        int subImageDimension = image.getWidth() / resolution;
+        int subImagesMatrixHeight = image.getHeight() / subImageDimension;
+        int subImagesMatrixWidth = image.getWidth() / subImageDimension;
+        long[][] checksums = new long[subImagesMatrixHeight][subImagesMatrixWidth];
+        for (long[] row : checksums) {
+            Arrays.fill(row, CHECKSUM_OFFSET_BASIS);
+        }
+        for (int row = 0; row < subImagesMatrixHeight * subImageDimension; row++) {
+            long[] rowChecksums = checksums[row / subImageDimension];
+            for (int col = 0; col < subImagesMatrixWidth * subImageDimension; col++) {
+                int index = col / subImageDimension;
+                rowChecksums[index] = (rowChecksums[index] ^ image.getPixel(row, col).getRGB()) * CHECKSUM_PRIME;
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Approximates the brightness and average color of every sub-image of an image split at
+     * a resolution, laid out like {@link #createSubImages}, from a sparse, evenly spread
+     * lattice of its pixels rather than all of them. The sub-images are never copied out.
+     *
+     * @param image the input image, padded to power-of-two dimensions.
+     * @param resolution the number of sub-images per row.
+     * @param samplesPerSide the number of sampled pixels along each side of a sub-image.
+     * @param averageColors the array to fill with the approximate average colors, packed as
+     *                      0xRRGGBB.
+     * @return the approximate brightness of every sub-image (normalized between 0 and 1).
+     */
+    public static double[][] calculateSampledBrightnesses(Image image, int resolution, int samplesPerSide,
+                                                          int[][] averageColors) {
+        int subImageDimension = image.getWidth() / resolution;
+        int subImagesMatrixHeight = image.getHeight() / subImageDimension;
+        int subImagesMatrixWidth = image.getWidth() / subImageDimension;
+        int step = Math.max(1, subImageDimension / samplesPerSide);
+        int firstSample = step / 2;
+        double[][] brightnesses = new double[subImagesMatrixHeight][subImagesMatrixWidth];
+        for (int i = 0; i < subImagesMatrixHeight; i++) {
+            for (int j = 0; j < subImagesMatrixWidth; j++) {
+                double sumGreyPixels = 0;
+                long sumRed = 0;
+                long sumGreen = 0;
+                long sumBlue = 0;
+                int pixelCount = 0;
+                for (int row = firstSample; row < subImageDimension; row += step) {
+                    for (int col = firstSample; col < subImageDimension; col += step) {
+                        Color pixel = image.getPixel(i * subImageDimension + row, j * subImageDimension + col);
+                        sumGreyPixels += calculateGreyPixel(pixel);
+                        sumRed += pixel.getRed();
+                        sumGreen += pixel.getGreen();
+                        sumBlue += pixel.getBlue();
+                        pixelCount++;
+                    }
+                }
+                averageColors[i][j] = (int) (sumRed / pixelCount) << 16
+                        | (int) (sumGreen / pixelCount) << 8
+                        | (int) (sumBlue / pixelCount);
+                brightnesses[i][j] = (sumGreyPixels / pixelCount) / Constants.MAX_RGB_VAL;
+            }
+        }
+        return brightnesses;
+    }
+
     /**
      * Calculates the average brightness of the given image.
      *
@@ -153,6 +234,38 @@ public class ImageEditor {
         return (sumGreyPixels / (imageHeight * imageWidth)) / Constants.MAX_RGB_VAL;
     }
 
+    /**
+     * Calculates the average brightness of the given image and, in the same pass over
+     * its pixels, its average color.
+     *
+     * @param image the input image.
+     * @param averageColors the array in which to store the average color, packed as 0xRRGGBB.
+     * @param index the index in averageColors at which to store the average color.
+     * @return the average brightness value (normalized between 0 and 1).
+     */
+    public static double calculateBrightness(Image image, int[] averageColors, int index) {
+        double sumGreyPixels = 0;
+        long sumRed = 0;
+        long sumGreen = 0;
+        long sumBlue = 0;
+        int imageHeight = image.getHeight();
+        int imageWidth = image.getWidth();
+        for (int i = 0; i < imageHeight; i++) {
+            for (int j = 0; j < imageWidth; j++) {
+                Color pixel = image.getPixel(i, j);
+                sumGreyPixels += calculateGreyPixel(pixel);
+                sumRed += pixel.getRed();
+                sumGreen += pixel.getGreen();
+                sumBlue += pixel.getBlue();
+            }
+        }
+        int pixelCount = imageHeight * imageWidth;
+        averageColors[index] = (int) (sumRed / pixelCount) << 16
+                | (int) (sumGreen / pixelCount) << 8
+                | (int) (sumBlue / pixelCount);
+        return (sumGreyPixels / pixelCount) / Constants.MAX_RGB_VAL;
+    }
+
     /**
      * Calculates the grey pixel value using the weighted RGB components.
      *
@@ -160,7 +273,18 @@ public class ImageEditor {
      * @return the calculated grey pixel value.
      */
     private static double calculateGreyPixel(Color pixel) {
-        return pixel.getRed() * Constants.RED_MULT + pixel.getGreen() * Constants.GREEN_MULT
-                + pixel.getBlue() * Constants.BLUE_MULT;
+        return calculateGreyPixel(pixel.getRed(), pixel.getGreen(), pixel.getBlue());
+    }
+
+    /**
+     * Calculates the grey pixel value of RGB components using their weights.
+     *
+     * @param red the red component.
+     * @param green the green component.
+     * @param blue the blue component.
+     * @return the calculated grey pixel value.
+     */
+    static double calculateGreyPixel(int red, int green, int blue) {
+        return red * Constants.RED_MULT + green * Constants.GREEN_MULT + blue * Constants.BLUE_MULT;
     }
 }
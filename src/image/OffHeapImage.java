@@ -0,0 +1,292 @@
+package image;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The OffHeapImage class keeps the decoded pixels of an image outside the Java heap, so
+ * the largest images neither fill the heap nor lengthen full collections.
+ *
+ * <p>Pixels are kept as packed RGB ints, either in direct buffers or in a raw pixel file
+ * mapped into memory. Raw pixel files are cached in a directory, keyed by a hash of the
+ * image file content, so opening the same image again maps the cached pixels and skips
+ * decoding entirely. Images are decoded band by band through {@link BandedImage}, so the
+ * heap never holds more than a band either.</p>
+ *
+ * <p>The memory is released as soon as the image is closed, rather than when the
+ * collector finds its buffers unreachable; the image cannot be read afterwards.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class OffHeapImage extends RowSourceImage implements AutoCloseable {
+
+    /** First int of every raw pixel file. */
+    private static final int RAW_MAGIC = 0x41535250;
+
+    /** Version of the raw pixel file format. */
+    private static final int RAW_VERSION = 1;
+
+    /** Size of the raw pixel file header: magic, version, width and height. */
+    private static final int RAW_HEADER_BYTES = 4 * Integer.BYTES;
+
+    /** Extension of raw pixel files. */
+    private static final String RAW_EXTENSION = ".rgb";
+
+    /** Largest buffer holding a chunk of rows, in bytes. */
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    /** The method releasing the memory of a direct buffer, or null if unavailable. */
+    private static final Method INVOKE_CLEANER;
+
+    /** The receiver of {@link #INVOKE_CLEANER}. */
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Buffers are then released by the collector
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    /** Number of rows in every chunk but the last. */
+    private final int rowsPerChunk;
+
+    /** The buffers holding the chunks of rows, or null once closed. */
+    private ByteBuffer[] chunks;
+
+    /** Int views of the chunks. */
+    private IntBuffer[] chunkPixels;
+
+    /**
+     * Constructs an image over buffers of rows.
+     *
+     * @param width the width of the image, in pixels.
+     * @param height the height of the image, in pixels.
+     * @param rowsPerChunk the number of rows in every chunk but the last.
+     * @param chunks the buffers holding the chunks of rows, as big-endian packed RGB ints.
+     */
+    private OffHeapImage(int width, int height, int rowsPerChunk, ByteBuffer[] chunks) {
+        super(width, height);
+        this.rowsPerChunk = rowsPerChunk;
+        this.chunks = chunks;
+        this.chunkPixels = new IntBuffer[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            chunkPixels[i] = chunks[i].asIntBuffer();
+        }
+    }
+
+    /**
+     * Opens an image file, mapping its cached raw pixels if there are any, or decoding it
+     * otherwise.
+     *
+     * @param filename the path to the image file.
+     * @param cacheDirectory the directory of raw pixel files, or null to decode into direct
+     *                       buffers without caching.
+     * @return the image.
+     * @throws IOException if the file is not a readable image, or the cache cannot be used.
+     */
+    public static OffHeapImage open(String filename, File cacheDirectory) throws IOException {
+        return open(filename, cacheDirectory == null ? null : ContentHash.of(new File(filename)),
+                cacheDirectory);
+    }
+
+    /**
+     * Opens an image file whose content hash is known, mapping its cached raw pixels if
+     * there are any, or decoding it otherwise.
+     *
+     * @param filename the path to the image file.
+     * @param contentHash the {@link ContentHash} of the file.
+     * @param cacheDirectory the directory of raw pixel files, or null to decode into direct
+     *                       buffers without caching.
+     * @return the image.
+     * @throws IOException if the file is not a readable image, or the cache cannot be used.
+     */
+    public static OffHeapImage open(String filename, String contentHash, File cacheDirectory)
+            throws IOException {
+        BandedImage source = new BandedImage(filename);
+        if (cacheDirectory == null) {
+            return decodeToDirectBuffers(source);
+        }
+        File rawFile = new File(cacheDirectory, contentHash + RAW_EXTENSION);
+        if (!rawFile.isFile()) {
+            writeRawFile(source, rawFile);
+        }
+        return mapRawFile(rawFile);
+    }
+
+    /**
+     * Gets the number of rows in every chunk of an image.
+     *
+     * @param width the width of the image, in pixels.
+     * @return the number of rows in every chunk but the last.
+     */
+    private static int rowsPerChunk(int width) {
+        return Math.max(1, MAX_CHUNK_BYTES / (width * Integer.BYTES));
+    }
+
+    /**
+     * Decodes an image into direct buffers.
+     *
+     * @param source the image file, read in bands.
+     * @return the image.
+     * @throws IOException if the file cannot be decoded.
+     */
+    private static OffHeapImage decodeToDirectBuffers(BandedImage source) throws IOException {
+        int rowsPerChunk = rowsPerChunk(source.width);
+        ByteBuffer[] chunks = new ByteBuffer[(source.height + rowsPerChunk - 1) / rowsPerChunk];
+        int[] row = new int[source.width];
+        try (RowReader sourceRows = source.openRows()) {
+            for (int y = 0; y < source.height; y++) {
+                int chunk = y / rowsPerChunk;
+                if (chunks[chunk] == null) {
+                    int rows = Math.min(rowsPerChunk, source.height - chunk * rowsPerChunk);
+                    chunks[chunk] = ByteBuffer.allocateDirect(rows * source.width * Integer.BYTES);
+                }
+                sourceRows.readRow(y, row, 0);
+                chunks[chunk].asIntBuffer().put((y % rowsPerChunk) * source.width, row);
+            }
+        } catch (IOException | RuntimeException e) {
+            release(chunks);
+            throw e;
+        }
+        return new OffHeapImage(source.width, source.height, rowsPerChunk, chunks);
+    }
+
+    /**
+     * Decodes an image into a raw pixel file. The file is written under a temporary name
+     * and then renamed, so a partly written file is never mistaken for a cached one.
+     *
+     * @param source the image file, read in bands.
+     * @param rawFile the raw pixel file.
+     * @throws IOException if the file cannot be decoded or written.
+     */
+    private static void writeRawFile(BandedImage source, File rawFile) throws IOException {
+        Files.createDirectories(rawFile.getParentFile().toPath());
+        File tempFile = File.createTempFile("pixels", ".tmp", rawFile.getParentFile());
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(RAW_HEADER_BYTES);
+            header.putInt(RAW_MAGIC).putInt(RAW_VERSION).putInt(source.width).putInt(source.height).flip();
+            channel.write(header);
+            ByteBuffer rowBytes = ByteBuffer.allocate(source.width * Integer.BYTES);
+            int[] row = new int[source.width];
+            try (RowReader sourceRows = source.openRows()) {
+                for (int y = 0; y < source.height; y++) {
+                    sourceRows.readRow(y, row, 0);
+                    rowBytes.clear();
+                    rowBytes.asIntBuffer().put(row);
+                    while (rowBytes.hasRemaining()) {
+                        channel.write(rowBytes);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            tempFile.delete();
+            throw e;
+        }
+        Files.move(tempFile.toPath(), rawFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Maps a raw pixel file into memory.
+     *
+     * @param rawFile the raw pixel file.
+     * @return the image.
+     * @throws IOException if the file cannot be mapped or is not a raw pixel file.
+     */
+    private static OffHeapImage mapRawFile(File rawFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(rawFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(RAW_HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read the whole header
+            }
+            header.flip();
+            if (header.remaining() < RAW_HEADER_BYTES || header.getInt() != RAW_MAGIC
+                    || header.getInt() != RAW_VERSION) {
+                throw new IOException("Not a raw pixel file: " + rawFile);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            if (channel.size() != RAW_HEADER_BYTES + (long) width * height * Integer.BYTES) {
+                throw new IOException("Truncated raw pixel file: " + rawFile);
+            }
+            int rowsPerChunk = rowsPerChunk(width);
+            ByteBuffer[] chunks = new ByteBuffer[(height + rowsPerChunk - 1) / rowsPerChunk];
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                int rows = Math.min(rowsPerChunk, height - chunk * rowsPerChunk);
+                long position = RAW_HEADER_BYTES + (long) chunk * rowsPerChunk * width * Integer.BYTES;
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        (long) rows * width * Integer.BYTES);
+            }
+            return new OffHeapImage(width, height, rowsPerChunk, chunks);
+        }
+    }
+
+    /**
+     * Starts a read copying rows out of their chunks. Rows are read with absolute gets,
+     * which leave the buffers unchanged, so reads may run concurrently.
+     *
+     * @return the reader of the rows.
+     * @throws IllegalStateException if the image is closed.
+     */
+    @Override
+    protected RowReader openRows() {
+        IntBuffer[] pixels = chunkPixels;
+        if (pixels == null) {
+            throw new IllegalStateException("The image is closed");
+        }
+        return (y, destination, offset) ->
+                pixels[y / rowsPerChunk].get((y % rowsPerChunk) * width, destination, offset, width);
+    }
+
+    /**
+     * Releases the memory holding the pixels. Closing a closed image does nothing.
+     */
+    @Override
+    public void close() {
+        if (chunks != null) {
+            ByteBuffer[] released = chunks;
+            chunks = null;
+            chunkPixels = null;
+            release(released);
+        }
+    }
+
+    /**
+     * Releases the memory of direct or mapped buffers now, if the JVM allows it.
+     *
+     * @param buffers the buffers, possibly including nulls.
+     */
+    private static void release(ByteBuffer[] buffers) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (buffer == null) {
+                continue;
+            }
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (ReflectiveOperationException e) {
+                // Left to the collector
+            }
+        }
+    }
+}
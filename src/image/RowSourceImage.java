@@ -0,0 +1,171 @@
+package image;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+
+/**
+ * The RowSourceImage class calculates the brightness grid of an image that is not held
+ * as an {@link Image}, reading its pixels one row at a time from wherever the subclass
+ * keeps them.
+ *
+ * <p>Cells are laid out over the image padded to power-of-two dimensions, exactly like
+ * {@link ImageEditor#padImage} and {@link ImageEditor#createSubImages} lay them out, and
+ * the pixels of every cell are summed in the same order, so the resulting brightnesses and
+ * colors are identical to the in-memory ones.</p>
+ *
+ * <p>Every calculation reads the rows through a {@link RowReader} of its own, so the
+ * brightness grids of one image may be calculated by several threads at once.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public abstract class RowSourceImage {
+
+    /** RGB value of the padding pixels. */
+    private static final int PADDING_RGB = 0xFFFFFF;
+
+    /** The width of the image, in pixels. */
+    protected final int width;
+
+    /** The height of the image, in pixels. */
+    protected final int height;
+
+    /** The width of the padded image, in pixels. */
+    private final int paddedWidth;
+
+    /** The height of the padded image, in pixels. */
+    private final int paddedHeight;
+
+    /**
+     * Constructs an image of the given dimensions.
+     *
+     * @param width the width of the image, in pixels.
+     * @param height the height of the image, in pixels.
+     */
+    protected RowSourceImage(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.paddedWidth = ImageEditor.findNewDimension(width);
+        this.paddedHeight = ImageEditor.findNewDimension(height);
+    }
+
+    /**
+     * A single read of the rows of an image, holding whatever the read needs, so that
+     * concurrent reads never share state.
+     */
+    protected interface RowReader extends AutoCloseable {
+
+        /**
+         * Reads a row of the image. Rows are read in increasing order.
+         *
+         * @param y the row, from 0.
+         * @param destination the array to store the RGB values of the row in.
+         * @param offset the index in destination of the first pixel of the row.
+         * @throws IOException if the row cannot be read.
+         */
+        void readRow(int y, int[] destination, int offset) throws IOException;
+
+        /**
+         * Releases what the read acquired, after the last row is read.
+         */
+        @Override
+        default void close() {
+        }
+    }
+
+    /**
+     * Starts a read of the rows of the image.
+     *
+     * @return the reader of the rows, to be closed after the last row is read.
+     * @throws IOException if the pixels cannot be accessed.
+     */
+    protected abstract RowReader openRows() throws IOException;
+
+    /**
+     * Retrieves the width of the padded image.
+     *
+     * @return the width of the padded image in pixels.
+     */
+    public int getPaddedWidth() {
+        return paddedWidth;
+    }
+
+    /**
+     * Retrieves the height of the padded image.
+     *
+     * @return the height of the padded image in pixels.
+     */
+    public int getPaddedHeight() {
+        return paddedHeight;
+    }
+
+    /**
+     * Gets the number of rows of cells of the padded image split at a resolution.
+     *
+     * @param resolution the number of cells per row.
+     * @return the number of rows of cells.
+     */
+    public int getGridRows(int resolution) {
+        return paddedHeight / (paddedWidth / resolution);
+    }
+
+    /**
+     * Gets the number of cells per row of the padded image split at a resolution.
+     *
+     * @param resolution the number of cells per row.
+     * @return the number of cells per row.
+     */
+    public int getGridColumns(int resolution) {
+        return paddedWidth / (paddedWidth / resolution);
+    }
+
+    /**
+     * Calculates the brightness and average color of every cell of the padded image
+     * split at a resolution.
+     *
+     * @param resolution the number of cells per row.
+     * @param colors the array to fill with the average colors, packed as 0xRRGGBB, of
+     *               {@link #getGridRows} rows of {@link #getGridColumns} cells.
+     * @return the brightness of every cell (normalized between 0 and 1).
+     * @throws InterruptedIOException if the thread is interrupted, checked once per row.
+     * @throws IOException if the pixels cannot be read.
+     */
+    public double[][] calculateBrightnesses(int resolution, int[][] colors) throws IOException {
+        return calculateCellSums(resolution).toBrightnesses(colors);
+    }
+
+    /**
+     * Sums the pixels of every cell of the padded image split at a resolution, reading
+     * every row once.
+     *
+     * @param resolution the number of cells per row.
+     * @return the sums.
+     * @throws InterruptedIOException if the thread is interrupted, checked once per row.
+     * @throws IOException if the pixels cannot be read.
+     */
+    public CellSums calculateCellSums(int resolution) throws IOException {
+        int cellSize = paddedWidth / resolution;
+        CellSums sums = new CellSums(cellSize, getGridRows(resolution), getGridColumns(resolution));
+
+        int verticalPadding = (paddedHeight - height) / 2;
+        int horizontalPadding = (paddedWidth - width) / 2;
+        int[] rowPixels = new int[paddedWidth];
+        try (RowReader rows = openRows()) {
+            for (int y = 0; y < sums.getRows() * cellSize; y++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException();
+                }
+                int sourceY = y - verticalPadding;
+                if (sourceY < 0 || sourceY >= height) {
+                    Arrays.fill(rowPixels, PADDING_RGB);
+                } else {
+                    Arrays.fill(rowPixels, 0, horizontalPadding, PADDING_RGB);
+                    rows.readRow(sourceY, rowPixels, horizontalPadding);
+                    Arrays.fill(rowPixels, horizontalPadding + width, paddedWidth, PADDING_RGB);
+                }
+                sums.addRow(y, rowPixels);
+            }
+        }
+        return sums;
+    }
+}
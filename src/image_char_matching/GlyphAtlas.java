@@ -0,0 +1,101 @@
+package image_char_matching;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The GlyphAtlas class holds every printable ASCII character of a font, rasterized once
+ * into square tiles of black ink on a white background.
+ *
+ * <p>Atlases are cached per font and tile size, so rendering ASCII art to an image only
+ * copies tile rows instead of drawing text for every char. Glyphs are rasterized by
+ * {@link CharConverter}, like the glyphs whose brightness is matched.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class GlyphAtlas {
+
+    /** Number of chars held by every atlas (the ASCII range). */
+    private static final int ATLAS_CHARS = 128;
+
+    /** RGB value of the background. */
+    private static final int PAPER = 0xFFFFFF;
+
+    /** Cached atlases, keyed by font name and tile size. */
+    private static final Map<String, GlyphAtlas> ATLASES = new ConcurrentHashMap<>();
+
+    /** The side length of every tile, in pixels. */
+    private final int tileSize;
+
+    /** The tiles of all chars, one after the other, as row-major RGB pixels. */
+    private final int[] tiles;
+
+    /** A blank tile, used for chars outside the atlas. */
+    private final int[] blankTile;
+
+    /**
+     * Rasterizes an atlas.
+     *
+     * @param fontName the name of the font.
+     * @param tileSize the side length of every tile, in pixels.
+     */
+    private GlyphAtlas(String fontName, int tileSize) {
+        this.tileSize = tileSize;
+        int tileArea = tileSize * tileSize;
+        this.tiles = new int[ATLAS_CHARS * tileArea];
+        this.blankTile = new int[tileArea];
+        Arrays.fill(blankTile, PAPER);
+        for (char c = 0; c < ATLAS_CHARS; c++) {
+            if (Character.isISOControl(c)) {
+                System.arraycopy(blankTile, 0, tiles, c * tileArea, tileArea);
+                continue;
+            }
+            BufferedImage glyph = CharConverter.getBufferedImage(c, fontName, tileSize);
+            for (int y = 0; y < tileSize; y++) {
+                for (int x = 0; x < tileSize; x++) {
+                    // Blend black ink over white paper by the glyph's coverage
+                    int paper = 0xFF - (glyph.getRGB(x, y) >>> 24);
+                    tiles[c * tileArea + y * tileSize + x] = paper << 16 | paper << 8 | paper;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the atlas of a font at a tile size, rasterizing it on first use.
+     *
+     * @param fontName the name of the font.
+     * @param tileSize the side length of every tile, in pixels.
+     * @return the atlas.
+     */
+    public static GlyphAtlas getAtlas(String fontName, int tileSize) {
+        return ATLASES.computeIfAbsent(fontName + "@" + tileSize, key -> new GlyphAtlas(fontName, tileSize));
+    }
+
+    /**
+     * Gets the side length of every tile.
+     *
+     * @return the tile size, in pixels.
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Copies the tile of a char into a row-major RGB pixel array.
+     *
+     * @param c the char to copy.
+     * @param pixels the destination pixels.
+     * @param offset the index in pixels of the tile's top-left pixel.
+     * @param scanline the number of pixels per row of the destination.
+     */
+    public void blit(char c, int[] pixels, int offset, int scanline) {
+        int[] source = c < ATLAS_CHARS ? tiles : blankTile;
+        int sourceOffset = c < ATLAS_CHARS ? c * tileSize * tileSize : 0;
+        for (int y = 0; y < tileSize; y++) {
+            System.arraycopy(source, sourceOffset + y * tileSize, pixels, offset + y * scanline, tileSize);
+        }
+    }
+}
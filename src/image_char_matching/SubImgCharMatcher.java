@@ -1,11 +1,13 @@
 package image_char_matching;
 
-import strategies.RoundAbsStrategy;
+import constants.Constants;
 import strategies.RoundStrategy;
 import factories.RoundStrategyFactory;
 
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The SubImgCharMatcher class manages the mapping between brightness values
@@ -18,6 +20,12 @@ import java.util.TreeSet;
  */
 public class SubImgCharMatcher {
 
+    /**
+     * The brightness of every char rasterized so far, shared by all matchers (and so by
+     * all shell sessions of the process), since it only depends on the char.
+     */
+    private static final Map<Character, Double> CHAR_BRIGHTNESSES = new ConcurrentHashMap<>();
+
     /** A map linking brightness values to sets of characters. */
     private final TreeMap<Double, TreeSet<Character>> charBrightnessMap;
 
@@ -30,6 +38,9 @@ public class SubImgCharMatcher {
     /** The strategy used to determine the nearest character for a brightness value. */
     private RoundStrategy roundStrategy;
 
+    /** The name of the current rounding strategy (e.g., "up", "down", or "abs"). */
+    private String roundStrategyName;
+
     /**
      * Constructs a new SubImgCharMatcher with the given character set.
      *
@@ -43,7 +54,7 @@ public class SubImgCharMatcher {
         maxBrightness = Double.MIN_VALUE;
         minBrightness = Double.MAX_VALUE;
         calculateMinMaxBrightness();
-        this.roundStrategy = new RoundAbsStrategy(this);
+        setRoundStrategy(Constants.DEFAULT_ROUND_STRATEGY);
     }
 
     /**
@@ -57,13 +68,24 @@ public class SubImgCharMatcher {
         return roundStrategy.getNearestCharBrightness(brightness);
     }
 
+    /**
+     * Gets the brightness of a character, rasterizing it only the first time any matcher
+     * needs it.
+     *
+     * @param c the character.
+     * @return the brightness value of the character.
+     */
+    private static double getCharBrightness(char c) {
+        return CHAR_BRIGHTNESSES.computeIfAbsent(c, SubImgCharMatcher::calculateCharBrightness);
+    }
+
     /**
      * Calculates the brightness of a character based on its boolean representation.
      *
      * @param c the character whose brightness is to be calculated.
      * @return the brightness value of the character.
      */
-    private double calculateCharBrightness(char c) {
+    private static double calculateCharBrightness(char c) {
         boolean[][] charBooleanArray = CharConverter.convertToBoolArray(c);
         int trueCounter = 0;
         for (int i = 0; i < charBooleanArray.length; i++) {
@@ -82,7 +104,7 @@ public class SubImgCharMatcher {
      * @param c the character to add.
      */
     public void addChar(char c) {
-        double charBrightness = calculateCharBrightness(c);
+        double charBrightness = getCharBrightness(c);
         charBrightnessMap.computeIfAbsent(charBrightness, k -> new TreeSet<>()).add(c);
         if (charBrightness < minBrightness) {
             minBrightness = charBrightness;
@@ -98,7 +120,7 @@ public class SubImgCharMatcher {
      * @param c the character to remove.
      */
     public void removeChar(char c) {
-        double charBrightness = calculateCharBrightness(c);
+        double charBrightness = getCharBrightness(c);
         if (charBrightnessMap.containsKey(charBrightness)) {
             charBrightnessMap.get(charBrightness).remove(c);
             if (charBrightnessMap.get(charBrightness).isEmpty()) {
@@ -150,6 +172,16 @@ public class SubImgCharMatcher {
     public void setRoundStrategy(String roundStrategy) throws IllegalArgumentException {
         RoundStrategyFactory roundStrategyFactory = new RoundStrategyFactory(this);
         this.roundStrategy = roundStrategyFactory.buildRoundStrategy(roundStrategy);
+        this.roundStrategyName = roundStrategy;
+    }
+
+    /**
+     * Gets the name of the current rounding strategy.
+     *
+     * @return the rounding strategy name (e.g., "up", "down", or "abs").
+     */
+    public String getRoundStrategyName() {
+        return roundStrategyName;
     }
 
     /**
@@ -0,0 +1,59 @@
+package render_events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering the build of a brightness grid: splitting the image into
+ * sub-images and calculating the brightness of each.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@Name(RenderEvents.NAME_PREFIX + "BrightnessGrid")
+@Label("Brightness Grid Build")
+@Category({RenderEvents.CATEGORY})
+@Description("Split of the image into sub-images and calculation of their brightness")
+@Enabled(false)
+@StackTrace(false)
+public class BrightnessGridEvent extends Event {
+
+    /** The render session the grid was built for. */
+    @Label("Session")
+    private long sessionId;
+
+    /** The resolution (chars per row) of the grid. */
+    @Label("Resolution")
+    private int resolution;
+
+    /** The number of rows of the grid. */
+    @Label("Rows")
+    private int rows;
+
+    /** The number of columns of the grid. */
+    @Label("Columns")
+    private int columns;
+
+    /**
+     * Ends the event and commits it if it is enabled and lasted past its threshold.
+     *
+     * @param sessionId the render session the grid was built for.
+     * @param resolution the resolution of the grid.
+     * @param rows the number of rows of the grid.
+     * @param columns the number of columns of the grid.
+     */
+    public void finish(long sessionId, int resolution, int rows, int columns) {
+        end();
+        if (shouldCommit()) {
+            this.sessionId = sessionId;
+            this.resolution = resolution;
+            this.rows = rows;
+            this.columns = columns;
+            commit();
+        }
+    }
+}
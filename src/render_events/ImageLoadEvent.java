@@ -0,0 +1,72 @@
+package render_events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering the decoding and padding of an input image.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@Name(RenderEvents.NAME_PREFIX + "ImageLoad")
+@Label("Image Load")
+@Category({RenderEvents.CATEGORY})
+@Description("Decoding and padding of an input image")
+@Enabled(false)
+@StackTrace(false)
+public class ImageLoadEvent extends Event {
+
+    /** The render session the image was loaded for. */
+    @Label("Session")
+    private long sessionId;
+
+    /** The image file name, or a hash of its content when it was not read from a file. */
+    @Label("Source")
+    private String source;
+
+    /** Whether the decoded image came from a cache. */
+    @Label("Cache Hit")
+    private boolean cacheHit;
+
+    /** The width of the padded image, in pixels. */
+    @Label("Width")
+    private int width;
+
+    /** The height of the padded image, in pixels. */
+    @Label("Height")
+    private int height;
+
+    /** The size of the image file. */
+    @Label("File Size")
+    @DataAmount
+    private long fileBytes;
+
+    /**
+     * Ends the event and commits it if it is enabled and lasted past its threshold.
+     *
+     * @param sessionId the render session the image was loaded for.
+     * @param source the image file name, or a hash of its content.
+     * @param cacheHit whether the decoded image came from a cache.
+     * @param width the width of the padded image, in pixels.
+     * @param height the height of the padded image, in pixels.
+     * @param fileBytes the size of the image file, or -1 if unknown.
+     */
+    public void finish(long sessionId, String source, boolean cacheHit, int width, int height, long fileBytes) {
+        end();
+        if (shouldCommit()) {
+            this.sessionId = sessionId;
+            this.source = source;
+            this.cacheHit = cacheHit;
+            this.width = width;
+            this.height = height;
+            this.fileBytes = fileBytes;
+            commit();
+        }
+    }
+}
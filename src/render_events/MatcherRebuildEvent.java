@@ -0,0 +1,62 @@
+package render_events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering a change of a matcher's charset, or the build of a
+ * new matcher.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@Name(RenderEvents.NAME_PREFIX + "MatcherRebuild")
+@Label("Matcher Rebuild")
+@Category({RenderEvents.CATEGORY})
+@Description("Change of a matcher's charset, or build of a new matcher")
+@Enabled(false)
+@StackTrace(false)
+public class MatcherRebuildEvent extends Event {
+
+    /** Operation of an event covering the build of a new matcher. */
+    public static final String BUILD_OPERATION = "build";
+
+    /** The render session the matcher belongs to. */
+    @Label("Session")
+    private long sessionId;
+
+    /** The command that changed the charset (e.g., "add a-z"), or "build" for a new matcher. */
+    @Label("Operation")
+    private String operation;
+
+    /** The number of chars in the charset before the change. */
+    @Label("Charset Size Before")
+    private int sizeBefore;
+
+    /** The number of chars in the charset after the change. */
+    @Label("Charset Size After")
+    private int sizeAfter;
+
+    /**
+     * Ends the event and commits it if it is enabled and lasted past its threshold.
+     *
+     * @param sessionId the render session the matcher belongs to.
+     * @param operation the command that changed the charset, or "build" for a new matcher.
+     * @param sizeBefore the number of chars in the charset before the change.
+     * @param sizeAfter the number of chars in the charset after the change.
+     */
+    public void finish(long sessionId, String operation, int sizeBefore, int sizeAfter) {
+        end();
+        if (shouldCommit()) {
+            this.sessionId = sessionId;
+            this.operation = operation;
+            this.sizeBefore = sizeBefore;
+            this.sizeAfter = sizeAfter;
+            commit();
+        }
+    }
+}
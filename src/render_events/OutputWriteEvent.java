@@ -0,0 +1,52 @@
+package render_events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering the write of a render to an output.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@Name(RenderEvents.NAME_PREFIX + "OutputWrite")
+@Label("Output Write")
+@Category({RenderEvents.CATEGORY})
+@Description("Write of a render to an output")
+@Enabled(false)
+@StackTrace(false)
+public class OutputWriteEvent extends Event {
+
+    /** The render session of the write. */
+    @Label("Session")
+    private long sessionId;
+
+    /** The output type written to (e.g., "console" or "html"). */
+    @Label("Output Type")
+    private String outputType;
+
+    /** The number of chars written. */
+    @Label("Cells")
+    private int cells;
+
+    /**
+     * Ends the event and commits it if it is enabled and lasted past its threshold.
+     *
+     * @param sessionId the render session of the write.
+     * @param outputType the output type written to.
+     * @param cells the number of chars written.
+     */
+    public void finish(long sessionId, String outputType, int cells) {
+        end();
+        if (shouldCommit()) {
+            this.sessionId = sessionId;
+            this.outputType = outputType;
+            this.cells = cells;
+            commit();
+        }
+    }
+}
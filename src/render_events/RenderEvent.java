@@ -0,0 +1,73 @@
+package render_events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering one run of the ASCII art algorithm.
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+@Name(RenderEvents.NAME_PREFIX + "Render")
+@Label("Render")
+@Category({RenderEvents.CATEGORY})
+@Description("One run of the ASCII art algorithm")
+@Enabled(false)
+@StackTrace(false)
+public class RenderEvent extends Event {
+
+    /** Cache outcome of a run that reused the previous result. */
+    public static final String RESULT_HIT = "hit";
+
+    /** Cache outcome of a run that reused the previous brightness grid only. */
+    public static final String BRIGHTNESS_HIT = "brightnessHit";
+
+    /** Cache outcome of a run that read its brightness grid from the disk cache. */
+    public static final String DISK_HIT = "diskHit";
+
+    /** Cache outcome of a run that recalculated only the cells an edit of the image changed. */
+    public static final String PARTIAL_HIT = "partialHit";
+
+    /** Cache outcome of a run that reused nothing. */
+    public static final String MISS = "miss";
+
+    /** The render session of the run. */
+    @Label("Session")
+    private long sessionId;
+
+    /** The resolution (chars per row) of the run. */
+    @Label("Resolution")
+    private int resolution;
+
+    /** What the run reused: "hit", "brightnessHit", "diskHit", "partialHit" or "miss". */
+    @Label("Cache Outcome")
+    private String cacheOutcome;
+
+    /** The number of chars in the result. */
+    @Label("Cells")
+    private int cells;
+
+    /**
+     * Ends the event and commits it if it is enabled and lasted past its threshold.
+     *
+     * @param sessionId the render session of the run.
+     * @param resolution the resolution of the run.
+     * @param cacheOutcome what the run reused from the previous one.
+     * @param cells the number of chars in the result.
+     */
+    public void finish(long sessionId, int resolution, String cacheOutcome, int cells) {
+        end();
+        if (shouldCommit()) {
+            this.sessionId = sessionId;
+            this.resolution = resolution;
+            this.cacheOutcome = cacheOutcome;
+            this.cells = cells;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package render_events;
+
+/**
+ * Holds the names shared by the Flight Recorder events of the render lifecycle.
+ *
+ * <p>All events are disabled by default and cost one flag check while disabled. They are
+ * enabled per recording with the settings file next to this class, which holds only these
+ * events, so it is combined with the JDK's default settings to also sample execution for
+ * flame graphs, e.g.
+ * {@code -XX:StartFlightRecording:settings=default,settings=src/render_events/ascii_art.jfc,filename=render.jfr}.
+ * Every event carries the id of its render session, so latencies can be grouped per
+ * session.</p>
+ *
+ * @author Joshua Kolodny, Itamar Lev Ari
+ */
+public class RenderEvents {
+
+    /** Prefix of the names of all events. */
+    static final String NAME_PREFIX = "ascii_art.";
+
+    /** The category all events are shown under. */
+    static final String CATEGORY = "ASCII Art";
+
+    /** Private constructor, since the class only has constants. */
+    private RenderEvents() {
+    }
+}